@@ -3,7 +3,13 @@ package org.lupenghan;
 import org.lupenghan.eazydb.lock.Impl.LockManagerImpl;
 import org.lupenghan.eazydb.log.Impl.LogManagerImpl;
 import org.lupenghan.eazydb.page.Impl.PageManagerImpl;
+import org.lupenghan.eazydb.page.interfaces.PageManager;
+import org.lupenghan.eazydb.page.models.BufferPoolStats;
+import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageIOMode;
 import org.lupenghan.eazydb.record.Impl.RecordManagerImpl;
+import org.lupenghan.eazydb.record.Impl.VacuumWorker;
+import org.lupenghan.eazydb.record.models.RowCodec;
 import org.lupenghan.eazydb.table.Impl.TableManagerImpl;
 import org.lupenghan.eazydb.table.models.Table;
 import org.lupenghan.eazydb.transaction.Impl.TransactionManagerImpl;
@@ -16,15 +22,18 @@ import org.lupenghan.query.interfaces.QueryEngine;
 import org.lupenghan.eazydb.table.interfaces.TableManager;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Scanner;
 
 public class MainCLI {
 
     private final QueryEngine queryEngine;
+    private final PageManager pageManager;
 
-    public MainCLI(QueryEngine queryEngine) {
+    public MainCLI(QueryEngine queryEngine, PageManager pageManager) {
         this.queryEngine = queryEngine;
+        this.pageManager = pageManager;
     }
 
     public void run() {
@@ -61,14 +70,15 @@ public class MainCLI {
                             break;
                         }
                         
-                        // 处理值数据
-                        String valueStr = new String(cmd.getValue());
-                        System.out.println("插入数据: " + valueStr);
+                        // 按表结构把各列的值编码为一行
+                        RowCodec codec = RowCodec.of(table);
+                        byte[] row = codec.encode(codec.parse(cmd.getColumns(), cmd.getValues()));
+                        System.out.println("插入数据: " + codec.format(ByteBuffer.wrap(row)));
                         
                         // 开始事务并执行插入
                         long xid = queryEngine.beginTransaction();
                         try {
-                            queryEngine.insert(xid, cmd.getTableName(), cmd.getValue());
+                            queryEngine.insert(xid, cmd.getTableName(), row);
                             queryEngine.commitTransaction(xid);
                             System.out.println("✅ 插入成功");
                         } catch (Exception e) {
@@ -83,16 +93,18 @@ public class MainCLI {
 
                     case SELECT_ALL -> {
                         List<byte[]> rows = queryEngine.selectAll(cmd.getTableName());
+                        RowCodec codec = RowCodec.of(queryEngine.getTableManager().getTable(cmd.getTableName()));
                         System.out.println("📄 查询结果：");
                         for (byte[] row : rows) {
-                            System.out.println(" - " + new String(row));
+                            System.out.println(" - " + formatRow(codec, row));
                         }
                     }
 
                     case SELECT_ONE -> {
                         byte[] data = queryEngine.select(cmd.getTableName(), cmd.getPageId(), cmd.getSlotId());
                         if (data != null) {
-                            System.out.println("📍 查询结果: " + new String(data));
+                            RowCodec codec = RowCodec.of(queryEngine.getTableManager().getTable(cmd.getTableName()));
+                            System.out.println("📍 查询结果: " + formatRow(codec, data));
                         } else {
                             System.out.println("⚠️ 没有找到记录");
                         }
@@ -106,12 +118,33 @@ public class MainCLI {
                     }
 
                     case UPDATE -> {
+                        // 读出当前行，只替换 SET 指定的列后重新编码
+                        Table table = queryEngine.getTableManager().getTable(cmd.getTableName());
+                        if (table == null) {
+                            System.out.println("⚠️ 表不存在: " + cmd.getTableName());
+                            break;
+                        }
+                        byte[] current = queryEngine.select(cmd.getTableName(), cmd.getPageId(), cmd.getSlotId());
+                        if (current == null) {
+                            System.out.println("⚠️ 没有找到记录");
+                            break;
+                        }
+                        RowCodec codec = RowCodec.of(table);
+                        int index = codec.indexOf(cmd.getColumns()[0]);
+                        if (index == -1) {
+                            System.out.println("⚠️ 列不存在: " + cmd.getColumns()[0]);
+                            break;
+                        }
+                        Object[] values = codec.decode(ByteBuffer.wrap(current));
+                        values[index] = codec.parse(index, cmd.getValues()[0]);
                         long xid = queryEngine.beginTransaction();
-                        queryEngine.update(xid, cmd.getTableName(), cmd.getPageId(), cmd.getSlotId(), cmd.getValue());
+                        queryEngine.update(xid, cmd.getTableName(), cmd.getPageId(), cmd.getSlotId(), codec.encode(values));
                         queryEngine.commitTransaction(xid);
                         System.out.println("✏️ 更新成功");
                     }
 
+                    case SHOW_BUFFERPOOL_STATS -> printBufferPoolStats(pageManager.getBufferPoolStats());
+
                     case UNKNOWN -> {
                         System.out.println("❌ 无法解析的命令，请检查 SQL 语法");
                     }
@@ -125,10 +158,44 @@ public class MainCLI {
 
         System.out.println("👋 再见！");
     }
+
+    // 按表结构显示一行，解不开的旧格式数据按原始字符串显示
+    private static String formatRow(RowCodec codec, byte[] row) {
+        try {
+            return codec.format(ByteBuffer.wrap(row));
+        } catch (IllegalArgumentException e) {
+            return new String(row);
+        }
+    }
+
+    private static void printBufferPoolStats(BufferPoolStats stats) {
+        System.out.println("📊 缓冲池统计：");
+        System.out.printf(" - 容量/驻留/脏页: %d / %d / %d%n",
+                stats.getCapacity(), stats.getResidentPages(), stats.getDirtyPages());
+        System.out.printf(" - 命中/缺页: %d / %d，命中率 %.2f%%%n",
+                stats.getHits(), stats.getMisses(), stats.getHitRatio() * 100);
+        System.out.printf(" - 淘汰: 干净 %d，脏 %d；跳过固定页帧 %d，淘汰失败 %d%n",
+                stats.getCleanEvictions(), stats.getDirtyEvictions(),
+                stats.getPinnedFrameSkips(), stats.getEvictionFailures());
+        System.out.printf(" - 读盘: %d 页 (%d 字节)，写盘: %d 页 (%d 字节)%n",
+                stats.getReads(), stats.getReadBytes(), stats.getWrites(), stats.getWriteBytes());
+        System.out.printf(" - readPage: %d 次，平均 %dµs，p50 ≤%dµs，p99 ≤%dµs%n",
+                stats.getReadPageCount(), stats.getReadPageMeanMicros(),
+                stats.getReadPageP50Micros(), stats.getReadPageP99Micros());
+        System.out.printf(" - writePage: %d 次，平均 %dµs，p50 ≤%dµs，p99 ≤%dµs%n",
+                stats.getWritePageCount(), stats.getWritePageMeanMicros(),
+                stats.getWritePageP50Micros(), stats.getWritePageP99Micros());
+    }
     public static void main(String[] args) throws Exception {
         // 初始化组件
-        var pageManager = new PageManagerImpl("data/page/page.page");
-        var logManager = new LogManagerImpl();
+        // -Deazydb.io.mode=mmap 切换为内存映射方式访问数据文件，direct 使用直接 I/O 绕过系统页缓存
+        var ioMode = PageIOMode.fromName(System.getProperty("eazydb.io.mode", "buffered"));
+        // -Deazydb.page.size=16384 指定新建数据库的页面大小，已有数据库沿用建库时的大小
+        String dataFile = "data/page/page.page";
+        int pageSize = PageManagerImpl.pageSizeOf(dataFile,
+                Integer.getInteger("eazydb.page.size", Page.DEFAULT_PAGE_SIZE));
+        var logManager = new LogManagerImpl("wal.log", pageSize);
+        var pageManager = new PageManagerImpl(dataFile, 1000, ioMode, logManager, pageSize);
         var lockManager = new LockManagerImpl();
         var transactionManager = new TransactionManagerImpl(logManager, lockManager,pageManager);
         var recordManager = new RecordManagerImpl(pageManager, logManager, transactionManager);
@@ -142,9 +209,19 @@ public class MainCLI {
                 transactionManager
         );
 
+        // 后台清理过期版本：-Deazydb.vacuum.pages.per.second 限制每秒处理的页数（0 不限速），
+        // -Deazydb.vacuum.interval.ms 为两轮之间的间隔
+        var vacuumWorker = new VacuumWorker(tableManager, pageManager, recordManager, transactionManager,
+                Integer.getInteger("eazydb.vacuum.pages.per.second", VacuumWorker.DEFAULT_PAGES_PER_SECOND),
+                Long.getLong("eazydb.vacuum.interval.ms", VacuumWorker.DEFAULT_INTERVAL_MILLIS));
+        vacuumWorker.start();
+
         // 启动 CLI
-        MainCLI cli = new MainCLI(queryEngine);
+        MainCLI cli = new MainCLI(queryEngine, pageManager);
         cli.run();
+        vacuumWorker.stop();
+        pageManager.close();
+        transactionManager.close();
     }
 
 }
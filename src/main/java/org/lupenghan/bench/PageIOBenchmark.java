@@ -0,0 +1,140 @@
+package org.lupenghan.bench;
+
+import org.lupenghan.eazydb.page.Impl.PageManagerImpl;
+import org.lupenghan.eazydb.page.models.BufferPoolStats;
+import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageIOMode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * 比较各 I/O 模式下页面管理器的吞吐和延迟：批量建页并做检查点、随机读、异步随机读、带预读的顺序扫描、随机修改后做检查点。
+ * 用法：java org.lupenghan.bench.PageIOBenchmark [页数] [缓冲池页数] [随机读次数] [模式,...]
+ * 例如 java org.lupenghan.bench.PageIOBenchmark 20000 1000 50000 buffered,direct
+ * 数据文件放在 bench-data 目录下，每个模式单独一个子目录，结束后删除。
+ * 缓冲 I/O 模式下数据文件在建页后仍留在系统页缓存中，随机读的结果反映的正是两层缓存叠加的效果。
+ */
+public class PageIOBenchmark {
+    private static final Path ROOT = Paths.get("bench-data");
+    // 异步随机读每批同时发出的读取数
+    private static final int ASYNC_BATCH = 64;
+
+    public static void main(String[] args) throws IOException {
+        int pages = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int poolSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int randomReads = args.length > 2 ? Integer.parseInt(args[2]) : 50000;
+        String modes = args.length > 3 ? args[3] : "buffered,direct";
+
+        System.out.printf("页数 %d，缓冲池 %d 页，随机读 %d 次%n", pages, poolSize, randomReads);
+        for (String name : modes.split(",")) {
+            PageIOMode mode = PageIOMode.fromName(name.trim());
+            Path dir = ROOT.resolve(mode.name().toLowerCase());
+            deleteRecursively(dir);
+            try {
+                run(mode, dir.resolve("page.page").toString(), pages, poolSize, randomReads);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+    }
+
+    private static void run(PageIOMode mode, String dataFile, int pages, int poolSize, int randomReads) throws IOException {
+        System.out.println("== " + mode);
+        long start = System.nanoTime();
+        PageManagerImpl pageManager = new PageManagerImpl(dataFile, poolSize, mode, null);
+        for (int i = 0; i < pages; i++) {
+            Page page = pageManager.createPage();
+            page.getHeader().setKeyCount(i);
+            page.setDirty(true);
+            pageManager.unpinPage(page);
+        }
+        pageManager.checkpoint();
+        report("建页 + 检查点", pages, System.nanoTime() - start, pageManager.getPageSize());
+        pageManager.close();
+        // 测的是冷启动后的随机读，不按关闭时的缓冲池转储预热
+        Files.deleteIfExists(Paths.get(dataFile).resolveSibling(PageManagerImpl.BUFFER_POOL_DUMP_FILE));
+
+        pageManager = new PageManagerImpl(dataFile, poolSize, mode, null);
+        try {
+            Random random = new Random(42);
+            start = System.nanoTime();
+            for (int i = 0; i < randomReads; i++) {
+                Page page = pageManager.readPage(1 + random.nextInt(pages));
+                pageManager.unpinPage(page);
+            }
+            report("随机读", randomReads, System.nanoTime() - start, pageManager.getPageSize());
+            printLatency(pageManager.getBufferPoolStats());
+
+            pageManager.getBufferPool().getMetrics().reset();
+            start = System.nanoTime();
+            for (int done = 0; done < randomReads; done += ASYNC_BATCH) {
+                List<CompletableFuture<Page>> batch = new ArrayList<>(ASYNC_BATCH);
+                for (int i = done; i < Math.min(randomReads, done + ASYNC_BATCH); i++) {
+                    batch.add(pageManager.readPageAsync(1 + random.nextInt(pages)));
+                }
+                for (CompletableFuture<Page> future : batch) {
+                    pageManager.unpinPage(future.join());
+                }
+            }
+            report("异步随机读", randomReads, System.nanoTime() - start, pageManager.getPageSize());
+            printLatency(pageManager.getBufferPoolStats());
+
+            pageManager.getBufferPool().getMetrics().reset();
+            start = System.nanoTime();
+            pageManager.readAhead(1, pages);
+            for (int pageId = 1; pageId <= pages; pageId++) {
+                Page page = pageManager.readPage(pageId);
+                pageManager.unpinPage(page);
+            }
+            report("顺序扫描", pages, System.nanoTime() - start, pageManager.getPageSize());
+
+            int updates = Math.max(1, pages / 10);
+            start = System.nanoTime();
+            for (int i = 0; i < updates; i++) {
+                Page page = pageManager.readPage(1 + random.nextInt(pages));
+                page.getHeader().setKeyCount(page.getHeader().getKeyCount() + 1);
+                page.setDirty(true);
+                pageManager.unpinPage(page);
+            }
+            long checkpointStart = System.nanoTime();
+            pageManager.checkpoint();
+            long end = System.nanoTime();
+            report("随机修改 + 检查点", updates, end - start, pageManager.getPageSize());
+            System.out.printf("  其中检查点 %.1f ms%n", (end - checkpointStart) / 1e6);
+        } finally {
+            pageManager.close();
+        }
+    }
+
+    private static void report(String phase, int pages, long nanos, int pageSize) {
+        double seconds = nanos / 1e9;
+        System.out.printf("  %-12s %8d 页  %8.1f ms  %10.0f 页/秒  %8.1f MB/秒%n",
+                phase, pages, nanos / 1e6, pages / seconds, (double) pages * pageSize / seconds / (1 << 20));
+    }
+
+    private static void printLatency(BufferPoolStats stats) {
+        System.out.printf("  命中率 %.1f%%，readPage p50 ≤%dµs，p99 ≤%dµs，平均 %dµs%n",
+                stats.getHitRatio() * 100, stats.getReadPageP50Micros(),
+                stats.getReadPageP99Micros(), stats.getReadPageMeanMicros());
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -19,25 +19,36 @@ public class LogManagerImpl implements LogManager {
     private RandomAccessFile raFile;
     private long nextLSN;       // 下一个要分配的日志序号（全局递增的LSN）
     private LogPage currentPage; // 当前正在写入的日志页
+    private long currentPageOffset; // 当前页在文件中的位置，未写满的页重复刷盘时原地覆盖
+    // 已写满、尚未写盘的日志页，紧挨在当前页之前；追加日志时不做 I/O，由下一次刷盘一起写出
+    private final List<LogPage> sealedPages = new ArrayList<>();
+    private volatile long flushedLSN; // 已落盘的最大LSN
+    // 日志页大小，与数据页相同，保证整页大小的记录也放得下；同一个日志文件不能改变
+    private final int pageSize;
 
     // 构造函数：指定日志文件路径，初始化日志文件并日志状态
     public LogManagerImpl(String filePath) throws IOException {
+        this(filePath, LogPage.PAGE_SIZE);
+    }
+
+    public LogManagerImpl(String filePath, int pageSize) throws IOException {
+        this.pageSize = pageSize;
         // 打开日志文件（不存在则创建）
         File file = new File(filePath);
         this.raFile = new RandomAccessFile(file, "rw");
         long fileLength = raFile.length();
         if (fileLength > 0) {
             // 如果日志文件长度不是整页大小倍数，说明上次写入时页面未完整写入，截断无效部分
-            long remainder = fileLength % LogPage.PAGE_SIZE;
+            long remainder = fileLength % pageSize;
             if (remainder != 0) {
                 raFile.setLength(fileLength - remainder);
                 fileLength = raFile.length();
             }
             if (fileLength > 0) {
                 // 读取最后一个页面的页头以确定最后的LSN
-                long lastPageOffset = fileLength - LogPage.PAGE_SIZE;
+                long lastPageOffset = fileLength - pageSize;
                 raFile.seek(lastPageOffset);
-                byte[] lastPageData = new byte[LogPage.PAGE_SIZE];
+                byte[] lastPageData = new byte[pageSize];
                 raFile.readFully(lastPageData);
                 ByteBuffer headerBuf = ByteBuffer.wrap(lastPageData);
                 long lastPageLSN = headerBuf.getLong(); // 页头中的 pageLSN
@@ -49,14 +60,16 @@ public class LogManagerImpl implements LogManager {
                 // 文件截断后变为空，说明没有完整页面
                 this.nextLSN = 1;
             }
-            // 移动文件指针到末尾，准备追加新日志页
-            raFile.seek(fileLength);
+            // 新日志页追加在文件末尾
+            this.currentPageOffset = fileLength;
         } else {
             // 日志文件为空，从LSN=1开始
             this.nextLSN = 1;
+            this.currentPageOffset = 0;
         }
+        this.flushedLSN = nextLSN - 1;
         // 初始化当前页
-        this.currentPage = new LogPage();
+        this.currentPage = new LogPage(pageSize);
     }
 
     // 默认构造函数：使用默认日志文件名 "wal.log"
@@ -66,13 +79,15 @@ public class LogManagerImpl implements LogManager {
 
     @Override
     public synchronized void appendLog(LogRecord logRecord) throws IOException {
-        // 检查日志记录大小是否超过单页可用容量（4096 - 页头12字节）
-        if (logRecord.getTotalSize() > LogPage.PAGE_SIZE - 12) {
+        // 检查日志记录大小是否超过单页可用容量（页面大小 - 页头12字节）
+        if (logRecord.getTotalSize() > pageSize - LogPage.HEADER_SIZE) {
             throw new IllegalArgumentException("LogRecord is too large to fit in a single page");
         }
-        // 当前页空间不足时，先刷盘当前页并换页
+        // 当前页空间不足时换页，写满的页留到下次刷盘时写出，调用方可能持有页面闩
         if (!currentPage.hasSpaceFor(logRecord)) {
-            flushCurrentPage();
+            sealedPages.add(currentPage);
+            currentPage = new LogPage(pageSize);
+            currentPageOffset += pageSize;
         }
         // 分配新的 LSN 并将记录追加到当前页
         logRecord.setLsn(nextLSN++);
@@ -82,30 +97,51 @@ public class LogManagerImpl implements LogManager {
 
     @Override
     public synchronized void flush() throws IOException {
-        if (currentPage.getEntryCount() == 0) {
-            // 当前页无记录则无需写盘
+        if (sealedPages.isEmpty() && currentPage.getEntryCount() == 0) {
+            // 没有未写盘的记录则无需写盘
             return;
         }
-        byte[] pageData = currentPage.serialize();   // 把日志页序列化为 byte[]
-        raFile.write(pageData);                      // 写入文件
+        // 写满的页依次排在当前页之前
+        long offset = currentPageOffset - (long) sealedPages.size() * pageSize;
+        long lastLSN = flushedLSN;
+        for (LogPage page : sealedPages) {
+            raFile.seek(offset);
+            raFile.write(page.serialize());
+            offset += pageSize;
+            lastLSN = page.getPageLSN();
+        }
+        sealedPages.clear();
+        if (currentPage.getEntryCount() > 0) {
+            byte[] pageData = currentPage.serialize();   // 把日志页序列化为 byte[]
+            raFile.seek(currentPageOffset);
+            raFile.write(pageData);                      // 写入文件
+            lastLSN = currentPage.getPageLSN();
+        }
         raFile.getFD().sync();// 强制刷入磁盘（操作系统缓存也跳过）
+        flushedLSN = lastLSN;
+    }
 
+    @Override
+    public void flushUpTo(long lsn) throws IOException {
+        if (lsn <= flushedLSN) {
+            return;
+        }
+        flush();
+    }
 
+    @Override
+    public long getFlushedLSN() {
+        return flushedLSN;
     }
-    // 将当前页写入磁盘并开启一个新页
+    // 将所有未写盘的页写入磁盘并开启一个新页
     private void flushCurrentPage() throws IOException {
+        flush();
         if (currentPage.getEntryCount() == 0) {
-            // 当前页无记录则无需写盘
             return;
         }
-        // 序列化当前页数据为4096字节
-        byte[] pageData = currentPage.serialize();
-        // 追加写入日志文件
-        raFile.write(pageData);
-        // 强制刷新操作系统缓冲区，保证数据持久化到磁盘
-        raFile.getFD().sync();
         // 切换到新的空日志页
-        currentPage = new LogPage();
+        currentPage = new LogPage(pageSize);
+        currentPageOffset += pageSize;
     }
 
     @Override
@@ -116,8 +152,8 @@ public class LogManagerImpl implements LogManager {
         raFile.seek(0);
         List<LogRecord> allLogs = new ArrayList<>();
         long fileLength = raFile.length();
-        long fullPages = fileLength / LogPage.PAGE_SIZE;
-        byte[] pageData = new byte[LogPage.PAGE_SIZE];
+        long fullPages = fileLength / pageSize;
+        byte[] pageData = new byte[pageSize];
         for (long i = 0; i < fullPages; i++) {
             raFile.readFully(pageData);
             LogPage page = LogPage.deserialize(pageData);
@@ -8,13 +8,24 @@ import java.util.List;
 public interface LogManager {
 
     /**
-     * 追加一条新的日志记录到日志中。如果当前页空间不足，则会先将当前页写入磁盘并开启新页。
+     * 追加一条新的日志记录到日志中。当前页空间不足时开启新页，写满的页留到 flush / flushUpTo 时写盘，
+     * 追加本身不做磁盘 I/O，可以在持有页面闩时调用。
      * @param record 要追加的日志记录对象（调用时将由日志管理器分配LSN）
      * @throws IOException 当写入磁盘发生错误时抛出异常
      */
     void appendLog(LogRecord record) throws IOException;
 
     void flush() throws IOException;
+
+    /**
+     * 保证 LSN 不大于 lsn 的日志都已落盘（WAL：数据页写盘前先刷日志到该页的 pageLSN）
+     * @param lsn 需要持久化到的日志序号
+     * @throws IOException 当写入磁盘发生错误时抛出异常
+     */
+    void flushUpTo(long lsn) throws IOException;
+
+    //已经持久化的最大 LSN
+    long getFlushedLSN();
     /**
      * 从磁盘加载所有日志页并提取其中的日志记录列表，用于系统恢复。
      * 顺序读取磁盘上所有日志页，反序列化得到日志记录。
@@ -6,13 +6,17 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * 日志页 (LogPage) 类，固定大小4KB，包含页头和若干日志记录。
+ * 日志页 (LogPage) 类，默认大小4KB，与数据页同样大小时能容纳整页的记录，包含页头和若干日志记录。
  * 提供将多个 LogRecord 组织成页并序列化/反序列化的功能。
  */
 public class LogPage {
     // 页面大小和页头大小常量
     public static final int PAGE_SIZE = 4096;
-    private static final int HEADER_SIZE = 12; // 页头: pageLSN(8 bytes) + entryCount(4 bytes)
+    public static final int HEADER_SIZE = 12; // 页头: pageLSN(8 bytes) + entryCount(4 bytes)
+
+    // 本页的大小，同一个日志文件中所有页面大小相同
+    @Getter
+    private final int pageSize;
 
     // 获取当前页的最大LSN
     // 页头字段
@@ -29,6 +33,11 @@ public class LogPage {
 
     // 构造函数：创建一个空的日志页
     public LogPage() {
+        this(PAGE_SIZE);
+    }
+
+    public LogPage(int pageSize) {
+        this.pageSize = pageSize;
         this.pageLSN = -1;
         this.entryCount = 0;
         this.logRecords = new ArrayList<>();
@@ -43,7 +52,7 @@ public class LogPage {
     // 判断新的日志记录是否可以放入当前页（即剩余空间是否足够）
     public boolean hasSpaceFor(LogRecord logRecord) {
         int recordSize = logRecord.getTotalSize();
-        return usedBytes + recordSize <= PAGE_SIZE;
+        return usedBytes + recordSize <= pageSize;
     }
 
     // 将一条日志记录添加到当前页（假定调用前已经通过 hasSpaceFor 判断有足够空间）
@@ -63,29 +72,29 @@ public class LogPage {
         usedBytes += logRecord.getTotalSize();
     }
 
-    // 将整个 LogPage 序列化为固定大小(4096字节)的字节数组
+    // 将整个 LogPage 序列化为页面大小的字节数组
     public byte[] serialize() {
-        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(pageSize);
         // 写入页头信息
         buffer.putLong(pageLSN);
         buffer.putInt(entryCount);
         // 写入所有日志记录
-        for (LogRecord logRecords : logRecords) {
-            logRecords.serialize();
+        for (LogRecord logRecord : logRecords) {
+            buffer.put(logRecord.serialize());
         }
         // ByteBuffer.allocate已将多余空间初始化为0，无需额外填充
         return buffer.array();
     }
 
-    // 从字节数组反序列化出一个 LogPage 对象
+    // 从字节数组反序列化出一个 LogPage 对象，页面大小即数组长度
     public static LogPage deserialize(byte[] pageData) {
-        if (pageData.length != PAGE_SIZE) {
+        if (pageData.length < HEADER_SIZE) {
             throw new IllegalArgumentException("Invalid page data size");
         }
         ByteBuffer buffer = ByteBuffer.wrap(pageData);
         long pageLSN = buffer.getLong();
         int entryCount = buffer.getInt();
-        LogPage page = new LogPage();
+        LogPage page = new LogPage(pageData.length);
         page.pageLSN = pageLSN;
         page.entryCount = entryCount;
         page.logRecords = new ArrayList<>();
@@ -16,10 +16,14 @@ public class LogRecord {
     public static final byte TYPE_COMPENSATION = 3;
     public static final byte TYPE_END_CHECKPOINT = 4;
     public static final byte TYPE_BEGIN_CHECKPOINT = 5;
+    // 批量插入：同一页面中一次插入的多行合成一条日志，既是重做信息，回滚时也按其中的槽位撤销
+    public static final byte TYPE_INSERT_BATCH = 6;
 
     public static final byte UNDO_INSERT = 0;
     public static final byte UNDO_DELETE = 1;
     public static final byte UNDO_UPDATE = 2;
+    // 原地改写本事务自己的版本：undoData 只含前后数据的差异部分，见 RecordManagerImpl
+    public static final byte UNDO_UPDATE_IN_PLACE = 3;
 
     //用于logpage
     private long lsn;
@@ -29,12 +33,17 @@ public class LogRecord {
     private int logRecordLength;
 
     private int pageID;
+    // 重做日志为数据在页内的偏移；撤销日志为记录的槽位号，更新会让记录在页内换位置，槽位不变
     private short offset;
     private byte[] newData = new byte[0];
 
     private byte operationType;
     private byte[] undoData = new byte[0];
 
+    // 批量插入的各行的槽位号和数据，一一对应
+    private short[] offsets = new short[0];
+    private byte[][] rows = new byte[0][];
+
 
     public static LogRecord createRedoLog(long xid, int pageID, short offset, byte[] newData) {
         LogRecord log = new LogRecord();
@@ -61,10 +70,33 @@ public class LogRecord {
         return log;
     }
 
+    public static LogRecord createInsertBatchLog(long xid, int pageID, short[] offsets, byte[][] rows) {
+        LogRecord log = new LogRecord();
+        log.lsn = 0;
+        log.logType = TYPE_INSERT_BATCH;
+        log.xid = xid;
+        log.operationType = UNDO_INSERT;
+        log.pageID = pageID;
+        log.offset = offsets[0];
+        log.offsets = offsets;
+        log.rows = rows;
+        log.logRecordLength = insertBatchLength(rows);
+        return log;
+    }
+
+    private static int insertBatchLength(byte[][] rows) {
+        int length = 8 + 4 + 4;
+        for (byte[] row : rows) {
+            length += 2 + 4 + row.length;
+        }
+        return length;
+    }
+
     public byte[] serialize() {
         byte[] body = switch (logType) {
             case TYPE_REDO -> serializeRedoLog();
             case TYPE_UNDO -> serializeUndoLog();
+            case TYPE_INSERT_BATCH -> serializeInsertBatchLog();
             default -> new byte[0];
         };
 
@@ -97,6 +129,19 @@ public class LogRecord {
         return buffer.array();
     }
 
+    private byte[] serializeInsertBatchLog() {
+        ByteBuffer buffer = ByteBuffer.allocate(logRecordLength);
+        buffer.putLong(xid);
+        buffer.putInt(pageID);
+        buffer.putInt(rows.length);
+        for (int i = 0; i < rows.length; i++) {
+            buffer.putShort(offsets[i]);
+            buffer.putInt(rows[i].length);
+            buffer.put(rows[i]);
+        }
+        return buffer.array();
+    }
+
     public static LogRecord deserialize(byte[] entry) {
         ByteBuffer buffer = ByteBuffer.wrap(entry);
         byte type = buffer.get();
@@ -108,6 +153,7 @@ public class LogRecord {
         return switch (type) {
             case TYPE_REDO -> deserializeRedoLog(body);
             case TYPE_UNDO -> deserializeUndoLog(body);
+            case TYPE_INSERT_BATCH -> deserializeInsertBatchLog(body);
             default -> null;
         };
     }
@@ -141,6 +187,21 @@ public class LogRecord {
         return log;
     }
 
+    private static LogRecord deserializeInsertBatchLog(byte[] data) {
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        long xid = buffer.getLong();
+        int pageID = buffer.getInt();
+        int count = buffer.getInt();
+        short[] offsets = new short[count];
+        byte[][] rows = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            offsets[i] = buffer.getShort();
+            rows[i] = new byte[buffer.getInt()];
+            buffer.get(rows[i]);
+        }
+        return createInsertBatchLog(xid, pageID, offsets, rows);
+    }
+
     public int getTotalSize() {
         return 1 + 4 + 8 +  logRecordLength;
     }
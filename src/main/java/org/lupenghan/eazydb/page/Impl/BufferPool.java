@@ -0,0 +1,828 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.models.BufferAccessStrategy;
+import org.lupenghan.eazydb.page.models.Page;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * 缓冲池：固定数量的页帧 + 无锁页表(pageId -> 帧号) + 2Q 置换。
+ * 第一次读入的页面先进入试用队列（A1in，先进先出），从试用队列淘汰的页号记入幽灵队列（A1out），
+ * 短时间内再次缺页的页面才进入热区（Am，CLOCK 置换）。一次大扫描只会冲刷试用队列，热区的页面不受影响。
+ * 返回给调用方的页面都已被固定，使用完毕后需要 unpin，固定中的页面不会被淘汰。
+ * 每个页帧有一把闩（StampedLock），页面放入页帧和被淘汰时都会推进闩的版本号，
+ * 乐观读者因此不固定页面也能发现页帧在读取期间被换成了别的页面。
+ */
+public class BufferPool {
+    // 把页面从磁盘读入页帧缓冲区，页面不存在时返回 false
+    @FunctionalInterface
+    public interface PageLoader {
+        boolean load(int pageId, ByteBuffer frame) throws IOException;
+    }
+
+    // 把从 firstPageId 开始的连续页面一次读入多个页帧，返回实际存在的页数
+    @FunctionalInterface
+    public interface RunLoader {
+        int load(int firstPageId, ByteBuffer[] frames) throws IOException;
+    }
+
+    // 淘汰脏页时写回磁盘
+    @FunctionalInterface
+    public interface PageWriter {
+        void write(Page page) throws IOException;
+    }
+
+    // 没有干净页面时等后台刷脏写出一批页面的时间，超时后缺页自己写回一个脏页
+    private static final long FLUSH_WAIT_MILLIS = 100;
+    // 页帧都被固定或正在加载时最多等待的时间
+    private static final long EVICT_TIMEOUT_MILLIS = 1000;
+    // 2Q 论文建议的参数：试用队列占缓冲池的 1/4，幽灵队列记住缓冲池一半数量的页号
+    private static final int PROBATION_DIVISOR = 4;
+    private static final int GHOST_DIVISOR = 2;
+
+    private final Page[] frames;
+    // 每个页帧固定持有一块页面大小的缓冲区，页面换入换出时复用，不再为每次加载分配内存
+    private final ByteBuffer[] frameBuffers;
+    private final StampedLock[] latches;
+    private final ConcurrentHashMap<Integer, Integer> pageTable;
+    // 正在从磁盘加载的页面，保证同一页并发缺页时只读一次盘
+    private final ConcurrentHashMap<Integer, CompletableFuture<Page>> loading;
+    private final ConcurrentLinkedQueue<Integer> freeFrames;
+    private final ReentrantLock sweepLock;
+    private final PageWriter writer;
+    private int clockHand; // 受 sweepLock 保护
+    // 以下 2Q 状态都受 sweepLock 保护
+    private final boolean[] hot;                    // 页帧中的页面是否在热区
+    private final LinkedHashSet<Integer> probation; // 试用队列中的页帧，按读入顺序
+    private final LinkedHashSet<Integer> ghosts;    // 最近从试用队列淘汰的页号
+    private int hotCount;
+    private final int probationLimit;
+    private final int ghostLimit;
+    private final BufferPoolMetrics metrics;
+    // 找不到干净页面时通知后台刷脏
+    private volatile Runnable dirtyPressureHandler;
+    // 后台刷脏每写出一批页面推进一次，缺页在它上面等待干净页面
+    private final Object cleanSignal = new Object();
+    private volatile long cleanEpoch;
+
+    public BufferPool(int capacity, int pageSize, PageWriter writer) {
+        this(capacity, pageSize, writer, ByteBuffer::allocate);
+    }
+
+    /**
+     * @param frameAllocator 分配页帧缓冲区，直接 I/O 时需要分配对齐的堆外缓冲区
+     */
+    public BufferPool(int capacity, int pageSize, PageWriter writer, IntFunction<ByteBuffer> frameAllocator) {
+        this.frames = new Page[capacity];
+        this.frameBuffers = new ByteBuffer[capacity];
+        this.latches = new StampedLock[capacity];
+        this.pageTable = new ConcurrentHashMap<>(capacity * 2);
+        this.loading = new ConcurrentHashMap<>();
+        this.freeFrames = new ConcurrentLinkedQueue<>();
+        this.sweepLock = new ReentrantLock();
+        this.writer = writer;
+        this.hot = new boolean[capacity];
+        this.probation = new LinkedHashSet<>();
+        this.ghosts = new LinkedHashSet<>();
+        this.probationLimit = Math.max(1, capacity / PROBATION_DIVISOR);
+        this.ghostLimit = Math.max(1, capacity / GHOST_DIVISOR);
+        this.metrics = new BufferPoolMetrics(this, pageSize);
+        for (int i = 0; i < capacity; i++) {
+            frameBuffers[i] = frameAllocator.apply(pageSize);
+            latches[i] = new StampedLock();
+            freeFrames.add(i);
+        }
+    }
+
+    /**
+     * 获取并固定页面，未命中时通过 loader 加载，同一页面的并发加载只会执行一次
+     */
+    public Page fetch(int pageId, PageLoader loader) throws IOException {
+        return fetch(pageId, loader, null);
+    }
+
+    /**
+     * 按访问策略获取页面：扫描读入或命中的页面不置访问位，页面滑出环时如果没有被其他人访问过就直接回收页帧
+     * @param strategy 为空时与 fetch(pageId, loader) 相同
+     */
+    public Page fetch(int pageId, PageLoader loader, BufferAccessStrategy strategy) throws IOException {
+        Page page = fetchPage(pageId, loader, strategy == null);
+        if (page != null && strategy != null) {
+            Integer frameId = pageTable.get(pageId);
+            if (frameId != null) {
+                long displaced = strategy.push(frameId, pageId);
+                if (displaced != BufferAccessStrategy.NONE) {
+                    recycle((int) displaced, (int) (displaced >>> 32));
+                }
+            }
+        }
+        return page;
+    }
+
+    /**
+     * 乐观读取页面：命中时不固定页面、不加闩，只在页帧闩的版本号下读取后校验，整个过程不写任何共享变量；
+     * 未命中、页面正被淘汰或读取期间页帧被修改时，退回固定页面并在共享闩下读取。
+     * reader 只能读取和复制页面内容，不能保留页面或其中记录的引用
+     * @return reader 的结果，页面不存在时返回 null
+     */
+    public <T> T read(int pageId, PageLoader loader, BufferAccessStrategy strategy,
+                      Function<Page, T> reader) throws IOException {
+        Integer frameId = pageTable.get(pageId);
+        if (frameId != null) {
+            StampedLock latch = latches[frameId];
+            long stamp = latch.tryOptimisticRead();
+            Page page = frames[frameId];
+            if (stamp != 0 && page != null && !page.isEvicted()) {
+                try {
+                    T result = page.getHeader().getPageId() == pageId ? reader.apply(page) : null;
+                    if (latch.validate(stamp) && page.getHeader().getPageId() == pageId) {
+                        metrics.recordHit();
+                        // 访问位已置位时不再写，读多的热点页面不会因此争用缓存行
+                        if (strategy == null && !page.isReferenced()) {
+                            page.setReferenced(true);
+                        }
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (latch.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+        }
+        Page page = fetch(pageId, loader, strategy);
+        if (page == null) {
+            return null;
+        }
+        long stamp = page.latchShared();
+        try {
+            return reader.apply(page);
+        } finally {
+            page.unlatchShared(stamp);
+            page.unpin();
+        }
+    }
+
+    /**
+     * 页面已驻留时固定并返回，否则返回 null，不读盘
+     */
+    public Page fetchIfResident(int pageId) {
+        Integer frameId = pageTable.get(pageId);
+        if (frameId == null) {
+            return null;
+        }
+        Page page = pinFrame(pageId, frameId, true);
+        if (page != null) {
+            metrics.recordHit();
+        }
+        return page;
+    }
+
+    private Page fetchPage(int pageId, PageLoader loader, boolean touch) throws IOException {
+        while (true) {
+            Integer residentFrame = pageTable.get(pageId);
+            if (residentFrame != null) {
+                Page page = pinFrame(pageId, residentFrame, touch);
+                if (page != null) {
+                    metrics.recordHit();
+                    return page;
+                }
+                checkResidentPageId(pageId, residentFrame);
+                // 页面正在被淘汰（写回中），等淘汰完成后再从磁盘读取
+                Thread.yield();
+                continue;
+            }
+
+            CompletableFuture<Page> mine = new CompletableFuture<>();
+            CompletableFuture<Page> inFlight = loading.putIfAbsent(pageId, mine);
+            if (inFlight != null) {
+                // 等待其他线程加载完成后重新走命中路径进行固定
+                await(inFlight);
+                continue;
+            }
+
+            try {
+                if (pageTable.containsKey(pageId)) {
+                    mine.complete(null);
+                    continue;
+                }
+                metrics.recordMiss();
+                int frameId = allocateFrame();
+                ByteBuffer frame = frameBuffers[frameId];
+                frame.clear();
+                if (!loader.load(pageId, frame)) {
+                    freeFrames.add(frameId);
+                    mine.complete(null);
+                    return null;
+                }
+                Page page = Page.wrap(frame, latches[frameId]);
+                if (page.getHeader().getPageId() != pageId) {
+                    freeFrames.add(frameId);
+                    throw new IllegalStateException("页面 " + pageId + " 的页头页号为 " + page.getHeader().getPageId() + "，数据文件可能已损坏");
+                }
+                page.setReferenced(touch);
+                page.pin();
+                install(pageId, page, frameId, true);
+                mine.complete(page);
+                return page;
+            } catch (IOException | RuntimeException e) {
+                mine.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(pageId, mine);
+            }
+        }
+    }
+
+    /**
+     * 预读：把 [firstPageId, firstPageId + count) 中尚未驻留的页面批量读入缓冲池，不固定。
+     * 连续的缺失页面合并为一次读；已驻留或正被其他线程加载的页面直接跳过。
+     * 预读的页面访问位为 0，真正被访问前不会挤占热点页面。
+     * @return 实际读入的页数
+     */
+    public int prefetch(int firstPageId, int count, RunLoader loader) throws IOException {
+        return prefetch(firstPageId, count, loader, false, false);
+    }
+
+    /**
+     * @param restoring 按转储预热：只使用空闲页帧，没有空闲页帧时停止，不淘汰任何页面
+     * @param promote 读入的页面直接放入热区，只用于按转储预热
+     */
+    private int prefetch(int firstPageId, int count, RunLoader loader, boolean restoring, boolean promote) throws IOException {
+        int loaded = 0;
+        int i = 0;
+        while (i < count) {
+            int runStart = firstPageId + i;
+            List<CompletableFuture<Page>> run = new ArrayList<>();
+            while (i < count) {
+                int pageId = firstPageId + i;
+                if (pageTable.containsKey(pageId)) {
+                    break;
+                }
+                CompletableFuture<Page> mine = new CompletableFuture<>();
+                if (loading.putIfAbsent(pageId, mine) != null) {
+                    break;
+                }
+                if (pageTable.containsKey(pageId)) {
+                    loading.remove(pageId, mine);
+                    mine.complete(null);
+                    break;
+                }
+                run.add(mine);
+                i++;
+            }
+            if (run.isEmpty()) {
+                i++;
+                continue;
+            }
+            int present = loadRun(runStart, run, loader, restoring, promote);
+            loaded += present;
+            if (present < run.size()) {
+                break; // 已经读到文件末尾
+            }
+        }
+        return loaded;
+    }
+
+    private int loadRun(int firstPageId, List<CompletableFuture<Page>> run, RunLoader loader,
+                        boolean restoring, boolean promote) throws IOException {
+        int n = run.size();
+        int[] frameIds = new int[n];
+        int allocated = 0;
+        int present = 0;
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[n];
+            for (; allocated < n; allocated++) {
+                Integer frameId = restoring ? freeFrames.poll() : Integer.valueOf(allocateFrame());
+                if (frameId == null) {
+                    break;
+                }
+                frameIds[allocated] = frameId;
+                buffers[allocated] = frameBuffers[frameId].clear();
+            }
+            if (allocated == 0) {
+                return 0;
+            }
+            int read = loader.load(firstPageId, allocated == n ? buffers : Arrays.copyOf(buffers, allocated));
+            // 页头页号不符的页面不放入缓冲池，留给真正访问它的缺页报错
+            while (present < read) {
+                Page page = Page.wrap(buffers[present], latches[frameIds[present]]);
+                if (page.getHeader().getPageId() != firstPageId + present) {
+                    break;
+                }
+                page.setReferenced(false);
+                install(firstPageId + present, page, frameIds[present], false, promote);
+                present++;
+            }
+            return present;
+        } finally {
+            for (int k = present; k < allocated; k++) {
+                freeFrames.add(frameIds[k]);
+            }
+            // 等待者被唤醒后会重新查页表，未读入的页面由它们自己再走一次缺页
+            for (int k = 0; k < n; k++) {
+                loading.remove(firstPageId + k, run.get(k));
+                run.get(k).complete(null);
+            }
+        }
+    }
+
+    /**
+     * 按热度记录当前驻留的页面：热区中访问位为 1 的在前，试用队列从新到旧
+     */
+    public BufferPoolDump dump() {
+        sweepLock.lock();
+        try {
+            List<Integer> recent = new ArrayList<>();
+            List<Integer> older = new ArrayList<>();
+            for (int frameId = 0; frameId < frames.length; frameId++) {
+                Page page = frames[frameId];
+                if (page != null && hot[frameId] && !page.isEvicted()) {
+                    (page.isReferenced() ? recent : older).add(page.getHeader().getPageId());
+                }
+            }
+            recent.addAll(older);
+            List<Integer> cold = new ArrayList<>(probation.size());
+            for (int frameId : probation) {
+                Page page = frames[frameId];
+                if (page != null && !page.isEvicted()) {
+                    cold.add(page.getHeader().getPageId());
+                }
+            }
+            Collections.reverse(cold);
+            return new BufferPoolDump(toArray(recent), toArray(cold));
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * 按转储预热：热区页面仍放回热区，其余进入试用队列。每组取最热的一部分按页号排序，
+     * 连续的页号合并为一次最多 maxRunPages 页的读；只使用空闲页帧，不会挤掉预热期间真实访问读入的页面。
+     * @param cancelled 返回 true 时停止预热（如正在关闭）
+     * @return 读入的页数
+     */
+    public int restore(BufferPoolDump dump, RunLoader loader, int maxRunPages, BooleanSupplier cancelled) throws IOException {
+        int hotLimit = frames.length - probationLimit;
+        int[] hotIds = Arrays.copyOf(dump.getHotPageIds(), Math.min(dump.getHotPageIds().length, hotLimit));
+        int coldLimit = frames.length - hotIds.length;
+        int[] coldIds = Arrays.copyOf(dump.getProbationPageIds(), Math.min(dump.getProbationPageIds().length, coldLimit));
+        return restoreRuns(hotIds, true, loader, maxRunPages, cancelled)
+                + restoreRuns(coldIds, false, loader, maxRunPages, cancelled);
+    }
+
+    private int restoreRuns(int[] pageIds, boolean promote, RunLoader loader, int maxRunPages,
+                            BooleanSupplier cancelled) throws IOException {
+        Arrays.sort(pageIds);
+        int loaded = 0;
+        int i = 0;
+        while (i < pageIds.length && !cancelled.getAsBoolean()) {
+            int j = i + 1;
+            while (j < pageIds.length && j - i < maxRunPages && pageIds[j] == pageIds[j - 1] + 1) {
+                j++;
+            }
+            int count = Math.min(j - i, freeFrames.size());
+            if (count <= 0) {
+                break;
+            }
+            loaded += prefetch(pageIds[i], count, loader, true, promote);
+            i = j;
+        }
+        return loaded;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * 在空闲页帧上创建新页面，页面以固定状态返回给调用方。
+     * 新页面在磁盘上还是预分配的空白页，标记为脏页，淘汰前一定会写出页头
+     */
+    public Page create(int pageId) throws IOException {
+        int frameId = allocateFrame();
+        Page page = new Page(pageId, frameBuffers[frameId], latches[frameId]);
+        page.setDirty(true);
+        page.pin();
+        install(pageId, page, frameId, true);
+        return page;
+    }
+
+    /**
+     * 丢弃满足条件且未被固定的页面，不写回（用于删除段），被固定的页面保留
+     * @return 丢弃的页数
+     */
+    public int discard(IntPredicate pageFilter) {
+        int discarded = 0;
+        sweepLock.lock();
+        try {
+            for (int frameId = 0; frameId < frames.length; frameId++) {
+                Page page = frames[frameId];
+                if (page == null || !pageFilter.test(page.getHeader().getPageId()) || !page.tryEvict()) {
+                    continue;
+                }
+                pageTable.remove(page.getHeader().getPageId(), frameId);
+                long stamp = latches[frameId].writeLock();
+                release(frameId);
+                latches[frameId].unlockWrite(stamp);
+                freeFrames.add(frameId);
+                discarded++;
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+        return discarded;
+    }
+
+    public void setDirtyPressureHandler(Runnable handler) {
+        this.dirtyPressureHandler = handler;
+    }
+
+    public void unpin(Page page) {
+        page.unpin();
+    }
+
+    public int size() {
+        return pageTable.size();
+    }
+
+    public int capacity() {
+        return frames.length;
+    }
+
+    public BufferPoolMetrics getMetrics() {
+        return metrics;
+    }
+
+    public int dirtyCount() {
+        int dirty = 0;
+        for (Page page : frames) {
+            if (page != null && page.isDirty()) {
+                dirty++;
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * 当前驻留在缓冲池中的页面快照
+     */
+    public List<Page> residentPages() {
+        List<Page> pages = new ArrayList<>(pageTable.size());
+        for (Page page : frames) {
+            if (page != null && !page.isEvicted()) {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+    private Page pinFrame(int pageId, int frameId, boolean touch) {
+        Page page = frames[frameId];
+        if (page == null || page.getHeader().getPageId() != pageId || !page.tryPin()) {
+            return null;
+        }
+        if (touch && !page.isReferenced()) {
+            page.setReferenced(true);
+        }
+        return page;
+    }
+
+    /**
+     * 固定失败时检查页表映射：页帧中的页面页号与映射不符、且映射和页帧在检查期间都没有变化，
+     * 说明页帧里放的是别的页面而不是正被淘汰，再等也等不到，直接报错
+     */
+    private void checkResidentPageId(int pageId, int frameId) {
+        Page page = frames[frameId];
+        if (page != null && !page.isEvicted() && page.getHeader().getPageId() != pageId
+                && pageTable.get(pageId) == frameId && frames[frameId] == page) {
+            throw new IllegalStateException("页表中页面 " + pageId + " 所在的页帧 " + frameId + " 存放的是页面 "
+                    + page.getHeader().getPageId());
+        }
+    }
+
+    /**
+     * 回收滑出扫描环的页帧。页面仍是扫描读过的那一页、不在热区、之后没有被其他人访问过、没有被固定也不是脏页时，
+     * 直接淘汰并放回空闲链表，扫描的下一次缺页会复用它；否则它已经是普通页面，交给正常置换
+     */
+    private void recycle(int frameId, int pageId) {
+        sweepLock.lock();
+        try {
+            Page page = frames[frameId];
+            if (page == null || page.getHeader().getPageId() != pageId || hot[frameId] || page.isReferenced()) {
+                return;
+            }
+            if (evictFrame(frameId, page)) {
+                freeFrames.add(frameId);
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    private int allocateFrame() throws IOException {
+        Integer frameId = freeFrames.poll();
+        return frameId != null ? frameId : evict();
+    }
+
+    /**
+     * 放入页帧：真正被访问、且刚从试用队列淘汰还在幽灵队列中的页面直接进入热区，其余进入试用队列。
+     * 预读不算访问：落后于扫描的预读可能重新读入扫描刚用过的页面，不能因此把它们提升为热点。
+     * 页表映射也在 sweepLock 内建立：预读的页面没有被固定，否则放入页帧后、建立映射前
+     * 它可能已被其他线程淘汰，之后建立的映射会指向已被复用的页帧
+     */
+    private void install(int pageId, Page page, int frameId, boolean accessed) {
+        install(pageId, page, frameId, accessed, false);
+    }
+
+    // promote 为 true 时不经试用直接放入热区（按转储预热）
+    private void install(int pageId, Page page, int frameId, boolean accessed, boolean promote) {
+        sweepLock.lock();
+        try {
+            // 推进版本号：在页帧空闲期间开始的乐观读都会校验失败
+            long stamp = latches[frameId].writeLock();
+            frames[frameId] = page;
+            latches[frameId].unlockWrite(stamp);
+            pageTable.put(pageId, frameId);
+            if (promote || accessed && ghosts.remove(pageId)) {
+                hot[frameId] = true;
+                hotCount++;
+            } else {
+                probation.add(frameId);
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    // 页帧清空时清理 2Q 状态，调用方持有 sweepLock
+    private void release(int frameId) {
+        frames[frameId] = null;
+        if (hot[frameId]) {
+            hot[frameId] = false;
+            hotCount--;
+        }
+        probation.remove(frameId);
+    }
+
+    /**
+     * 2Q 淘汰：热区没有超出它的份额（容量减去试用队列配额）时从试用队列队头淘汰，否则在热区做 CLOCK；
+     * 某一边找不到可淘汰的页面时再试另一边。按热区大小而不是试用队列大小判断，
+     * 预读一次分配多个页帧、页面还没放入队列时也不会误伤热区。
+     * sweepLock 内只淘汰干净页面，不做 I/O。找不到时在锁外通知后台刷脏并等它写出一批页面；
+     * 后台迟迟没有写出时才标记一个脏页，放开 sweepLock 后自己写回，其他缺页不会排在这次写回后面。
+     * 页帧都被固定或正在加载时等待一段时间再放弃
+     */
+    private int evict() throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EVICT_TIMEOUT_MILLIS);
+        while (true) {
+            long epoch = cleanEpoch;
+            int frameId = evictClean();
+            if (frameId >= 0) {
+                return frameId;
+            }
+            Runnable handler = dirtyPressureHandler;
+            if (handler != null) {
+                handler.run();
+                long flushDeadline = Math.min(deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_WAIT_MILLIS));
+                if (awaitCleanPages(epoch, flushDeadline)) {
+                    continue;
+                }
+            }
+            frameId = evictDirty();
+            if (frameId >= 0) {
+                return frameId;
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+            awaitCleanPages(epoch, Math.min(deadline, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(1)));
+        }
+        metrics.recordEvictionFailure();
+        throw new IllegalStateException("缓冲池中的页面均被固定，无法淘汰");
+    }
+
+    /**
+     * 后台刷脏写出一批页面后调用，唤醒等待干净页面的缺页
+     */
+    public void pagesCleaned() {
+        synchronized (cleanSignal) {
+            cleanEpoch++;
+            cleanSignal.notifyAll();
+        }
+    }
+
+    // 等到 pagesCleaned 推进 epoch 或超时，返回是否有新写出的页面
+    private boolean awaitCleanPages(long epoch, long deadlineNanos) {
+        synchronized (cleanSignal) {
+            long remaining;
+            while (cleanEpoch == epoch && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(cleanSignal, remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return cleanEpoch != epoch;
+        }
+    }
+
+    private int evictClean() {
+        sweepLock.lock();
+        try {
+            int frameId = hotCount <= frames.length - probationLimit ? evictProbation() : -1;
+            if (frameId < 0) {
+                frameId = evictHot();
+            }
+            if (frameId < 0) {
+                frameId = evictProbation();
+            }
+            return frameId;
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * 按读入顺序淘汰试用队列中的干净页面，访问过的页面页号记入幽灵队列。
+     * 试用期间的命中不会提升页面：扫描对同一页的连续访问不能说明它是热点
+     */
+    private int evictProbation() {
+        for (Iterator<Integer> it = probation.iterator(); it.hasNext(); ) {
+            int frameId = it.next();
+            Page page = frames[frameId];
+            if (page == null) {
+                it.remove();
+                continue;
+            }
+            if (page.isDirty()) {
+                continue;
+            }
+            int pageId = page.getHeader().getPageId();
+            boolean accessed = page.isReferenced();
+            if (!evictFrame(frameId, page)) {
+                continue;
+            }
+            rememberEvicted(pageId, accessed);
+            return frameId;
+        }
+        return -1;
+    }
+
+    /**
+     * 热区的 CLOCK 扫描：访问位为 1 的页面清零后跳过，遇到未固定、访问位为 0 的干净页面即淘汰，最多转两圈
+     */
+    private int evictHot() {
+        for (int step = 0; step < frames.length * 2; step++) {
+            int frameId = clockHand;
+            clockHand = (clockHand + 1) % frames.length;
+
+            Page page = frames[frameId];
+            if (page == null || !hot[frameId]) {
+                continue;
+            }
+            if (page.isReferenced()) {
+                page.setReferenced(false);
+                continue;
+            }
+            if (page.isDirty()) {
+                continue;
+            }
+            if (evictFrame(frameId, page)) {
+                return frameId;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在 sweepLock 内标记一个未固定的脏页（先试用队列，再热区），放开锁后写回，写回完成再回来清空页帧。
+     * 标记后页面不能再被固定，刷脏线程也会跳过它，页表映射保留到写回完成，等待中的读者随后从磁盘读到最新内容
+     * @return 腾出的页帧，没有可淘汰的脏页时返回 -1
+     */
+    private int evictDirty() throws IOException {
+        int frameId = -1;
+        Page victim = null;
+        boolean wasHot = false;
+        sweepLock.lock();
+        try {
+            for (int candidate : probation) {
+                Page page = frames[candidate];
+                if (page != null && page.isDirty() && page.tryEvict()) {
+                    frameId = candidate;
+                    victim = page;
+                    break;
+                }
+            }
+            for (int step = 0; victim == null && step < frames.length; step++) {
+                int candidate = clockHand;
+                clockHand = (clockHand + 1) % frames.length;
+                Page page = frames[candidate];
+                if (page != null && hot[candidate] && page.isDirty() && page.tryEvict()) {
+                    frameId = candidate;
+                    victim = page;
+                    wasHot = true;
+                }
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+        if (victim == null) {
+            return -1;
+        }
+        int pageId = victim.getHeader().getPageId();
+        boolean accessed = victim.isReferenced();
+        try {
+            writer.write(victim);
+        } catch (IOException | RuntimeException e) {
+            victim.cancelEvict();
+            throw e;
+        }
+        sweepLock.lock();
+        try {
+            metrics.recordEviction(true);
+            pageTable.remove(pageId, frameId);
+            long stamp = latches[frameId].writeLock();
+            release(frameId);
+            latches[frameId].unlockWrite(stamp);
+            if (!wasHot) {
+                rememberEvicted(pageId, accessed);
+            }
+        } finally {
+            sweepLock.unlock();
+        }
+        return frameId;
+    }
+
+    // 从试用队列淘汰的页面：访问过的页号记入幽灵队列。调用方持有 sweepLock
+    private void rememberEvicted(int pageId, boolean accessed) {
+        // 预读后还没被访问就被淘汰的页面不记入幽灵队列，否则扫描随后的缺页会把它误当作热点
+        if (accessed) {
+            ghosts.add(pageId);
+            if (ghosts.size() > ghostLimit) {
+                Iterator<Integer> oldest = ghosts.iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+
+    /**
+     * 淘汰页帧中的干净页面；页面被固定、或在检查之后被固定者改脏时返回 false。调用方持有 sweepLock。
+     * 页面已不能被固定，闩也只有固定者才会持有，所以随后获取页帧排他闩不会等待；
+     * 持有排他闩清空页帧会推进版本号，正在乐观读取该页面的读者校验失败后退回固定路径重读
+     */
+    private boolean evictFrame(int frameId, Page page) {
+        if (!page.tryEvict()) {
+            metrics.recordPinnedFrameSkip();
+            return false;
+        }
+        if (page.isDirty()) {
+            page.cancelEvict();
+            return false;
+        }
+        metrics.recordEviction(false);
+        pageTable.remove(page.getHeader().getPageId(), frameId);
+        long stamp = latches[frameId].writeLock();
+        release(frameId);
+        latches[frameId].unlockWrite(stamp);
+        return true;
+    }
+
+    private static void await(CompletableFuture<Page> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw e;
+        }
+    }
+}
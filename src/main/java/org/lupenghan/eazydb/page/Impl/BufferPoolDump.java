@@ -0,0 +1,82 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 缓冲池转储：驻留页面的页号按热度排列，关闭时和运行中定期写到数据目录下，重启后据此预热缓冲池。
+ * 文件格式为 魔数(4) + 热区页数(4) + 试用队列页数(4) + 热区页号... + 试用队列页号...，
+ * 两组都是越靠前越热。只记页号不记内容，转储过期也只是多读或少读几页。
+ */
+public class BufferPoolDump {
+    private static final int MAGIC = 0x4250444D; // "BPDM"
+
+    // 热区页面，访问位为 1 的在前
+    private final int[] hotPageIds;
+    // 试用队列页面，从新到旧
+    private final int[] probationPageIds;
+
+    public BufferPoolDump(int[] hotPageIds, int[] probationPageIds) {
+        this.hotPageIds = hotPageIds;
+        this.probationPageIds = probationPageIds;
+    }
+
+    public int[] getHotPageIds() {
+        return hotPageIds;
+    }
+
+    public int[] getProbationPageIds() {
+        return probationPageIds;
+    }
+
+    public int size() {
+        return hotPageIds.length + probationPageIds.length;
+    }
+
+    /**
+     * 先写临时文件再原子替换，崩溃时留下的要么是旧的转储，要么是完整的新转储
+     */
+    public void write(Path path) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(12 + 4 * size());
+        buffer.putInt(MAGIC).putInt(hotPageIds.length).putInt(probationPageIds.length);
+        for (int pageId : hotPageIds) {
+            buffer.putInt(pageId);
+        }
+        for (int pageId : probationPageIds) {
+            buffer.putInt(pageId);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Files.write(tmp, buffer.array());
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 读取转储，文件不存在或格式不对时返回 null
+     */
+    public static BufferPoolDump read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+            return null;
+        }
+        int hotCount = buffer.getInt();
+        int probationCount = buffer.getInt();
+        if (hotCount < 0 || probationCount < 0 || buffer.remaining() != 4L * (hotCount + probationCount)) {
+            return null;
+        }
+        int[] hot = new int[hotCount];
+        int[] probation = new int[probationCount];
+        for (int i = 0; i < hotCount; i++) {
+            hot[i] = buffer.getInt();
+        }
+        for (int i = 0; i < probationCount; i++) {
+            probation[i] = buffer.getInt();
+        }
+        return new BufferPoolDump(hot, probation);
+    }
+}
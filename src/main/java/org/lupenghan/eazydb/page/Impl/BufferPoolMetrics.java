@@ -0,0 +1,229 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.BufferPoolMetricsMBean;
+import org.lupenghan.eazydb.page.models.BufferPoolStats;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓冲池和页面 I/O 的指标。计数器都是 LongAdder：热路径上各线程累加到各自的分段，
+ * 不会因为统计而争用同一个缓存行，只有读取指标时才汇总。
+ */
+public class BufferPoolMetrics implements BufferPoolMetricsMBean {
+    private final BufferPool bufferPool;
+    private final int pageSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder cleanEvictions = new LongAdder();
+    private final LongAdder dirtyEvictions = new LongAdder();
+    private final LongAdder pinnedFrameSkips = new LongAdder();
+    private final LongAdder evictionFailures = new LongAdder();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LatencyHistogram readPageLatency = new LatencyHistogram();
+    private final LatencyHistogram writePageLatency = new LatencyHistogram();
+
+    public BufferPoolMetrics(BufferPool bufferPool, int pageSize) {
+        this.bufferPool = bufferPool;
+        this.pageSize = pageSize;
+    }
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordEviction(boolean dirty) {
+        (dirty ? dirtyEvictions : cleanEvictions).increment();
+    }
+
+    void recordPinnedFrameSkip() {
+        pinnedFrameSkips.increment();
+    }
+
+    void recordEvictionFailure() {
+        evictionFailures.increment();
+    }
+
+    // 从磁盘读入的页数
+    void recordReads(int pages) {
+        if (pages > 0) {
+            reads.add(pages);
+        }
+    }
+
+    // 写回磁盘的页数
+    void recordWrites(int pages) {
+        writes.add(pages);
+    }
+
+    void recordReadPage(long nanos) {
+        readPageLatency.record(nanos);
+    }
+
+    // 一次写盘的耗时，后台刷脏的一次聚集写算一次
+    void recordWritePage(long nanos) {
+        writePageLatency.record(nanos);
+    }
+
+    public BufferPoolStats snapshot() {
+        long[] readHistogram = readPageLatency.snapshot();
+        long[] writeHistogram = writePageLatency.snapshot();
+        long readPageCount = count(readHistogram);
+        long writePageCount = count(writeHistogram);
+        return BufferPoolStats.builder()
+                .capacity(getCapacity())
+                .residentPages(getResidentPages())
+                .dirtyPages(getDirtyPages())
+                .hits(getHits())
+                .misses(getMisses())
+                .cleanEvictions(getCleanEvictions())
+                .dirtyEvictions(getDirtyEvictions())
+                .pinnedFrameSkips(getPinnedFrameSkips())
+                .evictionFailures(getEvictionFailures())
+                .reads(getReads())
+                .readBytes(getReadBytes())
+                .writes(getWrites())
+                .writeBytes(getWriteBytes())
+                .readPageCount(readPageCount)
+                .readPageMeanMicros(mean(readPageLatency.totalNanos(), readPageCount))
+                .readPageP50Micros(LatencyHistogram.percentileMicros(readHistogram, 0.5))
+                .readPageP99Micros(LatencyHistogram.percentileMicros(readHistogram, 0.99))
+                .writePageCount(writePageCount)
+                .writePageMeanMicros(mean(writePageLatency.totalNanos(), writePageCount))
+                .writePageP50Micros(LatencyHistogram.percentileMicros(writeHistogram, 0.5))
+                .writePageP99Micros(LatencyHistogram.percentileMicros(writeHistogram, 0.99))
+                .build();
+    }
+
+    @Override
+    public int getCapacity() {
+        return bufferPool.capacity();
+    }
+
+    @Override
+    public int getResidentPages() {
+        return bufferPool.size();
+    }
+
+    @Override
+    public int getDirtyPages() {
+        return bufferPool.dirtyCount();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long h = getHits();
+        long total = h + getMisses();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public long getCleanEvictions() {
+        return cleanEvictions.sum();
+    }
+
+    @Override
+    public long getDirtyEvictions() {
+        return dirtyEvictions.sum();
+    }
+
+    @Override
+    public long getPinnedFrameSkips() {
+        return pinnedFrameSkips.sum();
+    }
+
+    @Override
+    public long getEvictionFailures() {
+        return evictionFailures.sum();
+    }
+
+    @Override
+    public long getReads() {
+        return reads.sum();
+    }
+
+    @Override
+    public long getReadBytes() {
+        return getReads() * pageSize;
+    }
+
+    @Override
+    public long getWrites() {
+        return writes.sum();
+    }
+
+    @Override
+    public long getWriteBytes() {
+        return getWrites() * pageSize;
+    }
+
+    @Override
+    public long getReadPageP50Micros() {
+        return LatencyHistogram.percentileMicros(readPageLatency.snapshot(), 0.5);
+    }
+
+    @Override
+    public long getReadPageP99Micros() {
+        return LatencyHistogram.percentileMicros(readPageLatency.snapshot(), 0.99);
+    }
+
+    @Override
+    public long getWritePageP50Micros() {
+        return LatencyHistogram.percentileMicros(writePageLatency.snapshot(), 0.5);
+    }
+
+    @Override
+    public long getWritePageP99Micros() {
+        return LatencyHistogram.percentileMicros(writePageLatency.snapshot(), 0.99);
+    }
+
+    @Override
+    public long[] getReadPageLatencyHistogram() {
+        return readPageLatency.snapshot();
+    }
+
+    @Override
+    public long[] getWritePageLatencyHistogram() {
+        return writePageLatency.snapshot();
+    }
+
+    @Override
+    public void reset() {
+        hits.reset();
+        misses.reset();
+        cleanEvictions.reset();
+        dirtyEvictions.reset();
+        pinnedFrameSkips.reset();
+        evictionFailures.reset();
+        reads.reset();
+        writes.reset();
+        readPageLatency.reset();
+        writePageLatency.reset();
+    }
+
+    private static long count(long[] histogram) {
+        long total = 0;
+        for (long c : histogram) {
+            total += c;
+        }
+        return total;
+    }
+
+    private static long mean(long totalNanos, long count) {
+        return count == 0 ? 0 : totalNanos / count / 1000;
+    }
+}
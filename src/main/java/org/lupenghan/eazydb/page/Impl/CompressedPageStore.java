@@ -0,0 +1,337 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 压缩存放的段文件：数据页写出时用 Deflate 压缩，读入时解压回完整页面，缓冲池中的页面大小不变。
+ * 页面内容大多是页内空闲区的 0，小记录的表通常能压到原来的几分之一。
+ * 数据文件以扇区为分配单位：[段头，整页不压缩][各页面的压缩数据，按扇区对齐 ...]，
+ * 每页的位置记录在同名的 .pmap 页面映射文件中，每项为 起始扇区(4) + 存放长度(4) + CRC32(4)，长度为 0 表示从未写过。
+ * 压缩后省不出一个扇区的页面原样存放，存放长度即页面大小。
+ * 页面总是写到新分配的扇区，旧位置要等下一次 sync 之后才能复用：崩溃后映射文件要么指向旧的、已落盘的内容，
+ * 要么指向新内容，新内容没有落盘时 CRC 校验失败，不会把别的页面的数据当作本页读出。
+ */
+public class CompressedPageStore implements PageStore {
+    public static final String MAP_SUFFIX = ".pmap";
+    private static final int SECTOR = 512;
+    private static final int ENTRY_SIZE = 12;
+    // 等待复用的扇区积压到这么多（且超过已用空间的四分之一）时，写入前先刷盘回收
+    private static final int RECLAIM_MIN_SECTORS = 256;
+
+    private final FileChannel data;
+    private final FileChannel map;
+    private final int pageSize;
+    // 段头占用的扇区数，数据从这之后开始分配
+    private final int headerSectors;
+    // 以下分配状态受 this 保护
+    private int[] starts;
+    private int[] lengths;
+    private int[] checksums;
+    // 空闲扇区区间：起始扇区 -> 扇区数，相邻区间总是合并
+    private final TreeMap<Integer, Integer> freeRuns = new TreeMap<>();
+    // 被新版本替换、等待下一次 sync 后才能复用的区间，每项为 {起始扇区, 扇区数}
+    private List<int[]> pendingFree = new ArrayList<>();
+    private int pendingSectors;
+    // 数据文件中已使用区域的末尾扇区
+    private int endSector;
+
+    private final ThreadLocal<Deflater> deflater = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private final ThreadLocal<Inflater> inflater = ThreadLocal.withInitial(Inflater::new);
+    private final ThreadLocal<byte[]> scratch;
+
+    public CompressedPageStore(Path dataPath, Path mapPath, int pageSize) throws IOException {
+        this.pageSize = pageSize;
+        this.headerSectors = pageSize / SECTOR;
+        this.scratch = ThreadLocal.withInitial(() -> new byte[pageSize]);
+        this.data = FileChannel.open(dataPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.map = FileChannel.open(mapPath,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        loadMap();
+    }
+
+    public static Path mapPath(Path dataPath) {
+        String name = dataPath.getFileName().toString();
+        return dataPath.resolveSibling(name.substring(0, name.lastIndexOf('.')) + MAP_SUFFIX);
+    }
+
+    /**
+     * 读入页面映射，按各页占用的扇区重建空闲区间；最后一个被引用的扇区之后的内容都是未落盘的写入，直接覆盖
+     */
+    private void loadMap() throws IOException {
+        int count = (int) (map.size() / ENTRY_SIZE);
+        ByteBuffer buffer = ByteBuffer.allocate(count * ENTRY_SIZE);
+        while (buffer.hasRemaining() && map.read(buffer, buffer.position()) > 0) {
+            // 读满整个映射文件
+        }
+        buffer.flip();
+        int capacity = Math.max(64, count);
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        checksums = new int[capacity];
+        TreeMap<Integer, Integer> used = new TreeMap<>();
+        for (int pageNo = 0; pageNo < count; pageNo++) {
+            starts[pageNo] = buffer.getInt();
+            lengths[pageNo] = buffer.getInt();
+            checksums[pageNo] = buffer.getInt();
+            if (lengths[pageNo] > 0) {
+                used.put(starts[pageNo], sectors(lengths[pageNo]));
+            }
+        }
+        int pos = headerSectors;
+        for (Map.Entry<Integer, Integer> run : used.entrySet()) {
+            if (run.getKey() > pos) {
+                freeRuns.put(pos, run.getKey() - pos);
+            }
+            pos = Math.max(pos, run.getKey() + run.getValue());
+        }
+        endSector = pos;
+    }
+
+    @Override
+    public boolean read(long pageNo, ByteBuffer dst) throws IOException {
+        if (pageNo == 0) {
+            return readHeader(dst);
+        }
+        int start;
+        int length;
+        int checksum;
+        synchronized (this) {
+            if (pageNo >= lengths.length || lengths[(int) pageNo] == 0) {
+                // 已分配但从未写出的页面与预分配的空白页一样全为 0
+                dst.put(new byte[dst.remaining()]);
+                return true;
+            }
+            start = starts[(int) pageNo];
+            length = lengths[(int) pageNo];
+            checksum = checksums[(int) pageNo];
+        }
+        byte[] stored = scratch.get();
+        ByteBuffer in = ByteBuffer.wrap(stored, 0, length);
+        long offset = (long) start * SECTOR;
+        while (in.hasRemaining()) {
+            int n = data.read(in, offset + in.position());
+            if (n < 0) {
+                break;
+            }
+        }
+        if (in.hasRemaining() || crc(stored, length) != checksum) {
+            throw new IOException("压缩页面校验失败: 第 " + pageNo + " 页");
+        }
+        if (length == pageSize) {
+            dst.put(stored, 0, length);
+            return true;
+        }
+        Inflater inf = inflater.get();
+        inf.reset();
+        inf.setInput(stored, 0, length);
+        int expected = dst.remaining();
+        try {
+            while (dst.hasRemaining() && !inf.finished()) {
+                if (inf.inflate(dst) == 0 && (inf.needsInput() || inf.needsDictionary())) {
+                    break;
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("压缩页面无法解压: 第 " + pageNo + " 页", e);
+        }
+        if (inf.getTotalOut() != expected) {
+            throw new IOException("压缩页面解压后长度不正确: 第 " + pageNo + " 页");
+        }
+        return true;
+    }
+
+    @Override
+    public void write(long pageNo, ByteBuffer src) throws IOException {
+        if (pageNo == 0) {
+            writeFully(src, 0);
+            return;
+        }
+        byte[] stored = scratch.get();
+        int length = compress(src, stored);
+        int checksum = crc(stored, length);
+        int sectors = sectors(length);
+        // 后台刷脏会反复改写同一批页面，旧版本积压过多时先回收，否则文件只增不减
+        if (needsReclaim()) {
+            sync();
+        }
+        int start = allocate(sectors);
+        writeFully(ByteBuffer.wrap(stored, 0, length), (long) start * SECTOR);
+
+        ByteBuffer entry = ByteBuffer.allocate(ENTRY_SIZE);
+        entry.putInt(start).putInt(length).putInt(checksum).flip();
+        synchronized (this) {
+            int no = (int) pageNo;
+            ensureCapacity(no);
+            if (lengths[no] > 0) {
+                pendingFree.add(new int[]{starts[no], sectors(lengths[no])});
+                pendingSectors += sectors(lengths[no]);
+            }
+            starts[no] = start;
+            lengths[no] = length;
+            checksums[no] = checksum;
+            while (entry.hasRemaining()) {
+                map.write(entry, (long) no * ENTRY_SIZE + entry.position());
+            }
+        }
+    }
+
+    // 数据文件随写入增长，不需要预先扩展
+    @Override
+    public void preallocate(long pages) {
+    }
+
+    @Override
+    public long size() throws IOException {
+        return data.size();
+    }
+
+    /**
+     * 先刷数据再刷映射，之后被替换的旧位置才可以复用；末尾空出的部分截掉，归还磁盘空间
+     */
+    @Override
+    public void sync() throws IOException {
+        List<int[]> released;
+        synchronized (this) {
+            released = pendingFree;
+            pendingFree = new ArrayList<>();
+            pendingSectors = 0;
+        }
+        data.force(false);
+        map.force(false);
+        synchronized (this) {
+            for (int[] run : released) {
+                free(run[0], run[1]);
+            }
+            // 在锁内截断：新分配的区间都在 endSector 之前，不会被截掉
+            long end = (long) endSector * SECTOR;
+            if (data.size() > end) {
+                data.truncate(end);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        data.close();
+        map.close();
+    }
+
+    private boolean readHeader(ByteBuffer dst) throws IOException {
+        if (data.size() == 0) {
+            return false;
+        }
+        long offset = 0;
+        while (dst.hasRemaining()) {
+            int n = data.read(dst, offset);
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        return true;
+    }
+
+    /**
+     * 压缩到 out 中，返回存放长度；压缩后省不出一个扇区时原样存放
+     */
+    private int compress(ByteBuffer src, byte[] out) {
+        Deflater def = deflater.get();
+        def.reset();
+        def.setInput(src.duplicate());
+        def.finish();
+        int limit = pageSize - SECTOR;
+        int length = 0;
+        while (!def.finished() && length < limit) {
+            length += def.deflate(out, length, limit - length);
+        }
+        if (def.finished()) {
+            return length;
+        }
+        src.duplicate().get(out, 0, pageSize);
+        return pageSize;
+    }
+
+    private synchronized boolean needsReclaim() {
+        return pendingSectors >= Math.max(RECLAIM_MIN_SECTORS, endSector / 4);
+    }
+
+    // 首次适配分配连续扇区，没有合适的空闲区间时在文件末尾追加
+    private synchronized int allocate(int sectors) {
+        for (Map.Entry<Integer, Integer> run : freeRuns.entrySet()) {
+            int length = run.getValue();
+            if (length >= sectors) {
+                // 先取出键值再删除：TreeMap 删除节点时可能把后继的键值搬进这个节点
+                int start = run.getKey();
+                freeRuns.remove(start);
+                if (length > sectors) {
+                    freeRuns.put(start + sectors, length - sectors);
+                }
+                return start;
+            }
+        }
+        int start = endSector;
+        endSector += sectors;
+        return start;
+    }
+
+    // 归还区间并与前后相邻的空闲区间合并，位于末尾时直接缩回 endSector
+    private void free(int start, int sectors) {
+        Map.Entry<Integer, Integer> next = freeRuns.ceilingEntry(start);
+        if (next != null && next.getKey() == start + sectors) {
+            sectors += freeRuns.remove(next.getKey());
+        }
+        Map.Entry<Integer, Integer> prev = freeRuns.floorEntry(start);
+        if (prev != null && prev.getKey() + prev.getValue() == start) {
+            freeRuns.remove(prev.getKey());
+            start = prev.getKey();
+            sectors += prev.getValue();
+        }
+        if (start + sectors == endSector) {
+            endSector = start;
+        } else {
+            freeRuns.put(start, sectors);
+        }
+    }
+
+    private void ensureCapacity(int pageNo) {
+        if (pageNo < lengths.length) {
+            return;
+        }
+        int capacity = Math.max(pageNo + 1, lengths.length * 2);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        checksums = Arrays.copyOf(checksums, capacity);
+    }
+
+    private void writeFully(ByteBuffer src, long offset) throws IOException {
+        while (src.hasRemaining()) {
+            offset += data.write(src, offset);
+        }
+    }
+
+    private static int sectors(int length) {
+        return (length + SECTOR - 1) / SECTOR;
+    }
+
+    private static int crc(byte[] bytes, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,219 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import com.sun.nio.file.ExtendedOpenOption;
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 以 O_DIRECT 方式读写的页面文件：数据不经过操作系统页缓存，内存预算全部归缓冲池，
+ * 页面只缓存一份，fsync 也不会因为积压的系统脏页而忽快忽慢。
+ * 直接 I/O 要求缓冲区地址、长度和文件位置都按块对齐。缓冲池在这种模式下用 allocateAligned 分配页帧，
+ * 读写直接在页帧上进行；其他缓冲区（如段头）经过每个线程一块的对齐中转缓冲区复制一次。
+ */
+public class DirectPageStore implements PageStore {
+    // 页帧的对齐单位，覆盖常见的 512B 和 4KB 逻辑块
+    public static final int ALIGNMENT = 4096;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    // 文件系统要求的对齐单位
+    private final int blockSize;
+    private final ThreadLocal<ByteBuffer> bounce = new ThreadLocal<>();
+
+    public DirectPageStore(Path path, int pageSize) throws IOException {
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+        this.blockSize = (int) Files.getFileStore(path).getBlockSize();
+        if (pageSize % blockSize != 0) {
+            throw new IOException("页面大小 " + pageSize + " 不是文件系统块大小 " + blockSize + " 的整数倍，不能使用直接 I/O");
+        }
+        this.pageSize = pageSize;
+        try {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    ExtendedOpenOption.DIRECT);
+        } catch (UnsupportedOperationException e) {
+            throw new IOException("当前平台不支持直接 I/O: " + path, e);
+        }
+    }
+
+    /**
+     * 分配按 ALIGNMENT 对齐的堆外缓冲区
+     */
+    public static ByteBuffer allocateAligned(int size) {
+        return ByteBuffer.allocateDirect(size + ALIGNMENT).alignedSlice(ALIGNMENT).limit(size).slice();
+    }
+
+    @Override
+    public boolean read(long pageNo, ByteBuffer dst) throws IOException {
+        long offset = pageNo * pageSize;
+        if (offset >= channel.size()) {
+            return false;
+        }
+        if (isAligned(dst)) {
+            readFully(dst, offset);
+            return true;
+        }
+        ByteBuffer staging = staging(pageSize);
+        readFully(staging, offset);
+        staging.flip();
+        staging.limit(Math.min(staging.limit(), dst.remaining()));
+        dst.put(staging);
+        return true;
+    }
+
+    /**
+     * 页帧都已对齐时一次分散读，否则读入中转缓冲区后再分给各页
+     */
+    @Override
+    public int read(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        long offset = firstPageNo * pageSize;
+        long fileSize = channel.size();
+        if (offset >= fileSize) {
+            return 0;
+        }
+        int count = (int) Math.min(pages.length, (fileSize - offset + pageSize - 1) / pageSize);
+        ByteBuffer[] targets = count == pages.length ? pages : Arrays.copyOf(pages, count);
+        if (allAligned(targets)) {
+            synchronized (channel) {
+                channel.position(offset);
+                while (channel.read(targets) > 0) {
+                    // 读满所有缓冲区或到达文件末尾为止
+                }
+            }
+            return count;
+        }
+        ByteBuffer staging = staging(count * pageSize);
+        readFully(staging, offset);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer page = staging.duplicate();
+            page.limit((i + 1) * pageSize).position(i * pageSize);
+            targets[i].put(page);
+        }
+        return count;
+    }
+
+    @Override
+    public void write(long pageNo, ByteBuffer src) throws IOException {
+        long offset = pageNo * pageSize;
+        writeFully(isAligned(src) ? src : stage(src), offset);
+    }
+
+    /**
+     * 页帧都已对齐时一次聚集写，否则拼到中转缓冲区后一次写出
+     */
+    @Override
+    public void write(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        if (allAligned(pages)) {
+            long remaining = 0;
+            for (ByteBuffer page : pages) {
+                remaining += page.remaining();
+            }
+            synchronized (channel) {
+                channel.position(firstPageNo * pageSize);
+                while (remaining > 0) {
+                    remaining -= channel.write(pages);
+                }
+            }
+            return;
+        }
+        ByteBuffer staging = staging(pages.length * pageSize);
+        for (ByteBuffer page : pages) {
+            staging.put(page);
+        }
+        writeFully(pad(staging), firstPageNo * pageSize);
+    }
+
+    // 直接 I/O 不能只写一个字节，把新的最后一页整页写为 0
+    @Override
+    public void preallocate(long pages) throws IOException {
+        long newSize = pages * pageSize;
+        if (channel.size() < newSize) {
+            ByteBuffer zero = staging(pageSize);
+            zero.put(new byte[pageSize]).flip();
+            writeFully(zero, newSize - pageSize);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    // 数据已绕过页缓存，force 只需刷新设备缓存和文件元数据
+    @Override
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private boolean isAligned(ByteBuffer buffer) {
+        return buffer.isDirect()
+                && buffer.alignmentOffset(buffer.position(), blockSize) == 0
+                && buffer.remaining() % blockSize == 0;
+    }
+
+    private boolean allAligned(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (!isAligned(buffer)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void readFully(ByteBuffer dst, long offset) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, offset);
+            if (n <= 0) {
+                break;
+            }
+            offset += n;
+        }
+    }
+
+    private void writeFully(ByteBuffer src, long offset) throws IOException {
+        while (src.hasRemaining()) {
+            offset += channel.write(src, offset);
+        }
+    }
+
+    // 把 src 复制到中转缓冲区，长度补齐到块大小
+    private ByteBuffer stage(ByteBuffer src) {
+        ByteBuffer staging = staging(src.remaining());
+        staging.put(src);
+        return pad(staging);
+    }
+
+    // 把已写入的内容补 0 到块大小的整数倍，返回可供写出的视图
+    private ByteBuffer pad(ByteBuffer staging) {
+        int end = (staging.position() + blockSize - 1) / blockSize * blockSize;
+        while (staging.position() < end) {
+            staging.put((byte) 0);
+        }
+        return staging.flip();
+    }
+
+    // 当前线程的对齐中转缓冲区，容量不够时按需扩大；返回时已清空，limit 为 size 向上对齐到块大小
+    private ByteBuffer staging(int size) {
+        int capacity = (size + blockSize - 1) / blockSize * blockSize;
+        ByteBuffer buffer = bounce.get();
+        if (buffer == null || buffer.capacity() < capacity) {
+            buffer = ByteBuffer.allocateDirect(capacity + blockSize).alignedSlice(blockSize);
+            bounce.set(buffer);
+        }
+        buffer.clear().limit(capacity);
+        return buffer;
+    }
+}
@@ -0,0 +1,110 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 基于 FileChannel 定位读写的页面文件，每次读写一页对应一次系统调用
+ */
+public class FilePageStore implements PageStore {
+    private final FileChannel channel;
+    private final int pageSize;
+
+    public FilePageStore(Path path, int pageSize) throws IOException {
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = pageSize;
+    }
+
+    @Override
+    public boolean read(long pageNo, ByteBuffer dst) throws IOException {
+        long offset = pageNo * pageSize;
+        if (offset >= channel.size()) {
+            return false;
+        }
+        while (dst.hasRemaining()) {
+            int n = channel.read(dst, offset);
+            if (n < 0) {
+                break;
+            }
+            offset += n;
+        }
+        return true;
+    }
+
+    /**
+     * 连续页面用一次 FileChannel 分散读完成，同样依赖通道位置，与聚集写共用一把锁
+     */
+    @Override
+    public int read(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        long offset = firstPageNo * pageSize;
+        long fileSize = channel.size();
+        if (offset >= fileSize) {
+            return 0;
+        }
+        int count = (int) Math.min(pages.length, (fileSize - offset + pageSize - 1) / pageSize);
+        ByteBuffer[] targets = count == pages.length ? pages : Arrays.copyOf(pages, count);
+        synchronized (channel) {
+            channel.position(offset);
+            while (channel.read(targets) > 0) {
+                // 读满所有缓冲区或到达文件末尾为止
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public void write(long pageNo, ByteBuffer src) throws IOException {
+        long offset = pageNo * pageSize;
+        while (src.hasRemaining()) {
+            offset += channel.write(src, offset);
+        }
+    }
+
+    /**
+     * 连续页面用一次 FileChannel 聚集写完成，聚集写依赖通道位置，因此需要串行执行
+     */
+    @Override
+    public void write(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer page : pages) {
+            remaining += page.remaining();
+        }
+        synchronized (channel) {
+            channel.position(firstPageNo * pageSize);
+            while (remaining > 0) {
+                remaining -= channel.write(pages);
+            }
+        }
+    }
+
+    // 在新的文件末尾写一个字节，效果等同 setLength，文件系统支持时不实际占用磁盘
+    @Override
+    public void preallocate(long pages) throws IOException {
+        long newSize = pages * pageSize;
+        if (channel.size() < newSize) {
+            channel.write(ByteBuffer.allocate(1), newSize - 1);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
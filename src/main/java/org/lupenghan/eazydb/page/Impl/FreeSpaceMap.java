@@ -0,0 +1,218 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.models.Page;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 空闲空间映射（FSM）：记录一张表每个堆页面的空闲字节数，按页面大小的 1/256 粗分为一个字节的桶。
+ * 内存中用最大值线段树组织，O(log n) 找到第一个空闲空间足够的页面。
+ * 磁盘上是独立的 .fsm 文件，由若干 FSM 页组成，每页：[条目数 4][pageId 4 + 桶 1]...，只回写修改过的 FSM 页。
+ * 映射中的值可能偏大（例如回滚后），调用方拿到页面后要以页面实际空间为准，并用 update 纠正。
+ */
+public class FreeSpaceMap implements Closeable {
+    private static final int BUCKETS = 256;
+    private static final int ENTRY_SIZE = 4 + 1;
+    private static final int FSM_PAGE_HEADER_SIZE = 4;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    private final int entriesPerFsmPage;
+    // 页面按加入顺序排列，pageId 单调递增
+    private int[] pageIds;
+    private byte[] buckets;
+    private int count;
+    private final Map<Integer, Integer> indexOf;
+    // 最大值线段树，叶子从 leafBase 开始
+    private int[] tree;
+    private int leafBase;
+    private final BitSet dirtyFsmPages;
+
+    public FreeSpaceMap(Path path, int pageSize) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = pageSize;
+        this.entriesPerFsmPage = (pageSize - FSM_PAGE_HEADER_SIZE) / ENTRY_SIZE;
+        this.pageIds = new int[16];
+        this.buckets = new byte[16];
+        this.indexOf = new HashMap<>();
+        this.dirtyFsmPages = new BitSet();
+        load();
+    }
+
+    /**
+     * 查找 pageId 大于 afterPageId、空闲空间不少于 needed 字节的第一个页面
+     * @return 页面号，没有合适页面时返回 -1
+     */
+    public synchronized int findPage(int needed, int afterPageId) {
+        int bucket = neededBucket(needed);
+        if (bucket >= BUCKETS) {
+            return -1;
+        }
+        int from = firstIndexAfter(afterPageId);
+        if (from >= count || tree[1] < bucket) {
+            return -1;
+        }
+        int index = leftmost(1, 0, leafBase, from, bucket);
+        return index < 0 ? -1 : pageIds[index];
+    }
+
+    public int findPage(int needed) {
+        return findPage(needed, Integer.MIN_VALUE);
+    }
+
+    /**
+     * 按页面的空闲字节数（连续空闲区和碎片之和）更新映射，空闲字节数由调用方在持有页面闩时统计。
+     * 新页面只能按 pageId 递增的顺序加入，其余不在映射中的页面（如建立映射之前的旧页面）忽略
+     */
+    public synchronized void update(int pageId, int freeBytes) {
+        Integer index = indexOf.get(pageId);
+        if (index == null) {
+            if (count > 0 && pageId < pageIds[count - 1]) {
+                return;
+            }
+            index = append(pageId);
+        }
+        byte bucket = (byte) Math.min(BUCKETS - 1, (long) freeBytes * BUCKETS / pageSize);
+        if (buckets[index] == bucket) {
+            return;
+        }
+        buckets[index] = bucket;
+        setLeaf(index, Byte.toUnsignedInt(bucket));
+        dirtyFsmPages.set(index / entriesPerFsmPage);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * 把修改过的 FSM 页写回文件
+     */
+    public synchronized void flush() throws IOException {
+        ByteBuffer fsmPage = ByteBuffer.allocate(pageSize);
+        for (int p = dirtyFsmPages.nextSetBit(0); p >= 0; p = dirtyFsmPages.nextSetBit(p + 1)) {
+            int first = p * entriesPerFsmPage;
+            int n = Math.min(entriesPerFsmPage, count - first);
+            fsmPage.clear();
+            fsmPage.putInt(n);
+            for (int i = first; i < first + n; i++) {
+                fsmPage.putInt(pageIds[i]);
+                fsmPage.put(buckets[i]);
+            }
+            fsmPage.clear();
+            long position = (long) p * pageSize;
+            while (fsmPage.hasRemaining()) {
+                position += channel.write(fsmPage, position);
+            }
+        }
+        dirtyFsmPages.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private void load() throws IOException {
+        ByteBuffer fsmPage = ByteBuffer.allocate(pageSize);
+        long fsmPages = channel.size() / pageSize;
+        for (long p = 0; p < fsmPages; p++) {
+            fsmPage.clear();
+            long position = p * pageSize;
+            while (fsmPage.hasRemaining() && channel.read(fsmPage, position + fsmPage.position()) > 0) {
+                // 读满一页
+            }
+            fsmPage.flip();
+            int n = fsmPage.getInt();
+            for (int i = 0; i < n; i++) {
+                int pageId = fsmPage.getInt();
+                byte bucket = fsmPage.get();
+                int index = indexOf.containsKey(pageId) ? indexOf.get(pageId) : appendRaw(pageId);
+                buckets[index] = bucket;
+            }
+        }
+        rebuildTree();
+    }
+
+    private int append(int pageId) {
+        int index = appendRaw(pageId);
+        if (count > leafBase) {
+            rebuildTree();
+        }
+        dirtyFsmPages.set(index / entriesPerFsmPage);
+        return index;
+    }
+
+    private int appendRaw(int pageId) {
+        if (count == pageIds.length) {
+            pageIds = Arrays.copyOf(pageIds, count * 2);
+            buckets = Arrays.copyOf(buckets, count * 2);
+        }
+        pageIds[count] = pageId;
+        buckets[count] = 0;
+        indexOf.put(pageId, count);
+        return count++;
+    }
+
+    private void rebuildTree() {
+        leafBase = Integer.highestOneBit(Math.max(1, pageIds.length - 1)) << 1;
+        tree = new int[leafBase * 2];
+        for (int i = 0; i < count; i++) {
+            tree[leafBase + i] = Byte.toUnsignedInt(buckets[i]);
+        }
+        for (int node = leafBase - 1; node >= 1; node--) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    private void setLeaf(int index, int value) {
+        int node = leafBase + index;
+        tree[node] = value;
+        for (node >>= 1; node >= 1; node >>= 1) {
+            tree[node] = Math.max(tree[2 * node], tree[2 * node + 1]);
+        }
+    }
+
+    // 在节点 node 覆盖的区间 [lo, lo + width) 中找下标不小于 from、值不小于 bucket 的最左叶子
+    private int leftmost(int node, int lo, int width, int from, int bucket) {
+        if (tree[node] < bucket || lo + width <= from || lo >= count) {
+            return -1;
+        }
+        if (width == 1) {
+            return lo;
+        }
+        int half = width / 2;
+        int left = leftmost(2 * node, lo, half, from, bucket);
+        return left >= 0 ? left : leftmost(2 * node + 1, lo + half, half, from, bucket);
+    }
+
+    private int firstIndexAfter(int afterPageId) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (pageIds[mid] <= afterPageId) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // 向上取整，保证桶不低于该值的页面一定放得下
+    private int neededBucket(int needed) {
+        return (int) (((long) needed * BUCKETS + pageSize - 1) / pageSize);
+    }
+}
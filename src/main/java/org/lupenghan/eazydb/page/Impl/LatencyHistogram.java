@@ -0,0 +1,73 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 2 为底的对数延迟直方图，单位微秒：第 0 桶是不到 1µs，第 i 桶是 [2^(i-1), 2^i) µs，最后一桶收纳更长的延迟。
+ * 每个桶是一个 LongAdder，并发记录不争用同一个计数器。
+ */
+public class LatencyHistogram {
+    public static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets;
+    private final LongAdder totalNanos;
+
+    public LatencyHistogram() {
+        this.buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        this.totalNanos = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = micros == 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        buckets[bucket].increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * 各桶计数的快照，并发记录时各桶之间不保证是同一时刻
+     */
+    public long[] snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    public long totalNanos() {
+        return totalNanos.sum();
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        totalNanos.reset();
+    }
+
+    /**
+     * 由桶计数估算分位数，返回所在桶的上界（微秒），没有样本时返回 0
+     */
+    public static long percentileMicros(long[] counts, double quantile) {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return 1L << i;
+            }
+        }
+        return 1L << (counts.length - 1);
+    }
+}
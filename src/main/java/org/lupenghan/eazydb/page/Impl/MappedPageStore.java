@@ -0,0 +1,107 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 内存映射方式访问页面文件：文件按固定大小的段映射，读页面直接从映射区拷贝，不产生系统调用。
+ * 文件增长时只重新映射最后一个段。页面在文件中的位置与 FilePageStore 相同，但 preallocate 会按区把映射和文件
+ * 一起延长，文件长度是已预分配的长度而不是实际写入的长度，末尾可能有从未写过的全 0 页面，由段按页头判断是否存在。
+ */
+public class MappedPageStore implements PageStore {
+    // 每个映射段 64MB，必须是页面大小的整数倍
+    private static final long EXTENT_SIZE = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final int pageSize;
+    // 写时复制，读者无需加锁
+    private volatile MappedByteBuffer[] extents;
+    private volatile long fileSize;
+
+    public MappedPageStore(Path path, int pageSize) throws IOException {
+        if (EXTENT_SIZE % pageSize != 0) {
+            throw new IllegalArgumentException("页面大小必须整除映射段大小: " + pageSize);
+        }
+        this.channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageSize = pageSize;
+        this.extents = new MappedByteBuffer[0];
+        this.fileSize = 0;
+        grow(channel.size());
+    }
+
+    @Override
+    public boolean read(long pageNo, ByteBuffer dst) throws IOException {
+        long offset = pageNo * pageSize;
+        if (offset >= fileSize) {
+            return false;
+        }
+        MappedByteBuffer extent = extents[(int) (offset / EXTENT_SIZE)];
+        int pos = (int) (offset % EXTENT_SIZE);
+        int len = Math.min(dst.remaining(), extent.limit() - pos);
+        dst.put(extent.slice(pos, len));
+        return true;
+    }
+
+    @Override
+    public void write(long pageNo, ByteBuffer src) throws IOException {
+        long offset = pageNo * pageSize;
+        int len = src.remaining();
+        if (offset + len > fileSize) {
+            grow(offset + len);
+        }
+        MappedByteBuffer extent = extents[(int) (offset / EXTENT_SIZE)];
+        extent.put((int) (offset % EXTENT_SIZE), src, src.position(), len);
+        src.position(src.position() + len);
+    }
+
+    @Override
+    public void preallocate(long pages) throws IOException {
+        grow(pages * pageSize);
+    }
+
+    @Override
+    public long size() {
+        return fileSize;
+    }
+
+    @Override
+    public void sync() {
+        for (MappedByteBuffer extent : extents) {
+            extent.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        channel.close();
+    }
+
+    /**
+     * 将映射范围扩展到 newSize，READ_WRITE 映射会把文件同步延长到映射末尾
+     */
+    private synchronized void grow(long newSize) throws IOException {
+        if (newSize <= fileSize) {
+            return;
+        }
+        int count = (int) ((newSize + EXTENT_SIZE - 1) / EXTENT_SIZE);
+        MappedByteBuffer[] grown = Arrays.copyOf(extents, count);
+        // 最后一个已有段可能未映射满，需要和新增的段一起重新映射
+        int first = Math.max(extents.length - 1, 0);
+        for (int i = first; i < count; i++) {
+            long start = i * EXTENT_SIZE;
+            long length = Math.min(EXTENT_SIZE, newSize - start);
+            grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, start, length);
+        }
+        this.extents = grown;
+        this.fileSize = newSize;
+    }
+}
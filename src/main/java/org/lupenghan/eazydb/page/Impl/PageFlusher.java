@@ -0,0 +1,191 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lupenghan.eazydb.log.interfaces.LogManager;
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+import org.lupenghan.eazydb.page.models.Page;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 后台刷脏线程：脏页比例超过上限时，按 pageId 排序，把相邻页面合并成一次聚集写。
+ * 写页面前先把日志刷到这批页面的最大 pageLSN，遵守 WAL 规则。
+ */
+@Slf4j
+public class PageFlusher implements Runnable {
+    // 一次聚集写最多合并的页面数
+    private static final int MAX_RUN_PAGES = 64;
+
+    private final BufferPool bufferPool;
+    private final PageStore pageStore;
+    private final LogManager logManager; // 可以为空，此时不做 WAL 检查
+    private final double dirtyRatioLimit;
+    private final long intervalMillis;
+    // 页面快照使用的缓冲区，只在持有本对象锁时使用
+    private final ByteBuffer[] scratch;
+    // 写一批页面期间这些页面一直被固定，批次不能占满缓冲池，否则前台淘汰找不到页帧
+    private final int maxRunPages;
+    private final Object signal = new Object();
+    // 缓冲池找不到干净页面，下一轮不看脏页比例也要写
+    private volatile boolean pressure;
+    private volatile boolean running;
+    private Thread thread;
+
+    public PageFlusher(BufferPool bufferPool, PageStore pageStore, LogManager logManager,
+                       int pageSize, double dirtyRatioLimit, long intervalMillis) {
+        this(bufferPool, pageStore, logManager, pageSize, dirtyRatioLimit, intervalMillis, ByteBuffer::allocate);
+    }
+
+    /**
+     * @param bufferAllocator 分配快照缓冲区，与缓冲池页帧的分配方式相同
+     */
+    public PageFlusher(BufferPool bufferPool, PageStore pageStore, LogManager logManager,
+                       int pageSize, double dirtyRatioLimit, long intervalMillis,
+                       IntFunction<ByteBuffer> bufferAllocator) {
+        this.bufferPool = bufferPool;
+        this.pageStore = pageStore;
+        this.logManager = logManager;
+        this.dirtyRatioLimit = dirtyRatioLimit;
+        this.intervalMillis = intervalMillis;
+        this.maxRunPages = Math.max(1, Math.min(MAX_RUN_PAGES, bufferPool.capacity() / 4));
+        this.scratch = new ByteBuffer[maxRunPages];
+        for (int i = 0; i < maxRunPages; i++) {
+            scratch[i] = bufferAllocator.apply(pageSize);
+        }
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this, "page-flusher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        wake();
+        if (thread != null) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // 缓冲池找不到干净页面可淘汰时调用，提前触发一轮刷脏，每写完一批通知缓冲池
+    public void wake() {
+        synchronized (signal) {
+            pressure = true;
+            signal.notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            boolean urgent;
+            synchronized (signal) {
+                try {
+                    if (!pressure) {
+                        signal.wait(intervalMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                urgent = pressure;
+                pressure = false;
+            }
+            try {
+                List<Page> dirtyPages = dirtyPages();
+                if (urgent || dirtyPages.size() > bufferPool.capacity() * dirtyRatioLimit) {
+                    flush(dirtyPages);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("后台刷脏失败", e);
+            }
+        }
+    }
+
+    public List<Page> dirtyPages() {
+        List<Page> dirty = new ArrayList<>();
+        for (Page page : bufferPool.residentPages()) {
+            if (page.isDirty()) {
+                dirty.add(page);
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * 按 pageId 顺序写出给定的脏页，pageId 连续的页面合并为一次写
+     */
+    public synchronized void flush(List<Page> pages) throws IOException {
+        pages.sort(Comparator.comparingInt(p -> p.getHeader().getPageId()));
+        List<Page> run = new ArrayList<>(maxRunPages);
+        for (Page page : pages) {
+            // 固定住页面，防止拷贝过程中被淘汰、页帧被复用；已被淘汰的页面由淘汰方负责写回
+            if (!page.tryPin()) {
+                continue;
+            }
+            if (!run.isEmpty() && (run.size() == maxRunPages || !follows(run.get(run.size() - 1), page))) {
+                writeRun(run);
+                run.clear();
+            }
+            run.add(page);
+        }
+        if (!run.isEmpty()) {
+            writeRun(run);
+        }
+    }
+
+    private static boolean follows(Page prev, Page next) {
+        return next.getHeader().getPageId() == prev.getHeader().getPageId() + 1;
+    }
+
+    private void writeRun(List<Page> run) throws IOException {
+        try {
+            long maxLSN = 0;
+            for (int i = 0; i < run.size(); i++) {
+                Page page = run.get(i);
+                ByteBuffer copy = scratch[i];
+                copy.clear();
+                // 在共享闩下拷贝，写出的是某次修改完成后的完整页面；拷贝之后的修改会重新置脏，下一轮再写
+                long stamp = page.latchShared();
+                try {
+                    page.setDirty(false);
+                    copy.put(page.getBuffer().duplicate().clear());
+                    maxLSN = Math.max(maxLSN, page.getHeader().getPageLSN());
+                } finally {
+                    page.unlatchShared(stamp);
+                }
+                copy.flip();
+            }
+            if (logManager != null) {
+                logManager.flushUpTo(maxLSN);
+            }
+            long start = System.nanoTime();
+            pageStore.write(run.get(0).getHeader().getPageId(), Arrays.copyOf(scratch, run.size()));
+            BufferPoolMetrics metrics = bufferPool.getMetrics();
+            metrics.recordWritePage(System.nanoTime() - start);
+            metrics.recordWrites(run.size());
+        } catch (IOException | RuntimeException e) {
+            for (Page page : run) {
+                page.setDirty(true);
+            }
+            throw e;
+        } finally {
+            for (Page page : run) {
+                page.unpin();
+            }
+        }
+        bufferPool.pagesCleaned();
+    }
+}
@@ -1,81 +1,459 @@
 package org.lupenghan.eazydb.page.Impl;
 
 import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.lupenghan.eazydb.log.interfaces.LogManager;
+import org.lupenghan.eazydb.page.interfaces.BufferPoolMetricsMBean;
 import org.lupenghan.eazydb.page.interfaces.PageManager;
-import org.lupenghan.eazydb.page.models.FreeSpaceEntry;
+import org.lupenghan.eazydb.page.models.BufferAccessStrategy;
+import org.lupenghan.eazydb.page.models.BufferPoolStats;
 import org.lupenghan.eazydb.page.models.Page;
-import org.lupenghan.eazydb.page.models.PageHead;
-import org.lupenghan.eazydb.page.models.SlotDirectoryEntry;
-import org.lupenghan.eazydb.record.Impl.RecordManagerImpl;
-import org.lupenghan.eazydb.record.models.Record;
-import org.lupenghan.eazydb.record.models.RecordStatus;
+import org.lupenghan.eazydb.page.models.PageId;
+import org.lupenghan.eazydb.page.models.PageIOMode;
 
-import java.io.File;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 import java.io.IOException;
-import java.io.RandomAccessFile;
+import java.lang.management.ManagementFactory;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
-
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+@Slf4j
 @Data
 public class PageManagerImpl implements PageManager {
+    // 在页面 I/O 线程中执行的读写
+    @FunctionalInterface
+    private interface IOTask<T> {
+        T run() throws IOException;
+    }
+
     private final String dataFilePath;
-    private final RandomAccessFile dataFile;
-    private final Map<Integer, Page> pageCache;
-    private final AtomicInteger nextPageId;
+    private final SegmentedPageStore pageStore;
+    private final BufferPool bufferPool;
+    private final PageFlusher pageFlusher;
+    private final LogManager logManager;
+    // 执行预读的后台线程，队列满时直接丢弃预读请求，读页面时会同步补读
+    private final ThreadPoolExecutor readAheadExecutor;
+    // 执行异步页面读写的线程池，队列满时由调用线程自己执行，形成背压而不是丢弃请求
+    private final ThreadPoolExecutor ioExecutor;
+    // 每个线程各自的顺序访问状态
+    private final ThreadLocal<ScanState> scanState = ThreadLocal.withInitial(ScanState::new);
+    // 每张表的空闲空间映射，第一次使用时从 <表名>.fsm 加载
+    private final Map<String, FreeSpaceMap> freeSpaceMaps = new ConcurrentHashMap<>();
+    // 缓冲池指标在 JMX 中的名字，注册失败时为空
+    private final ObjectName metricsName;
+    // 缓冲池转储文件，与数据文件在同一目录；启动时据此在后台预热，运行中定期更新
+    private final Path bufferPoolDumpPath;
+    private final ScheduledExecutorService bufferPoolDumper;
     private static final int MAX_CACHE_SIZE = 1000;
-    private static final int PAGE_SIZE = 4096; // 4KB页面大小
+    // 页面大小：新建数据库时取构造参数，已有数据库以超级块中记录的为准
+    private final int pageSize;
+    // 脏页超过缓冲池的这个比例时后台开始刷脏
+    private static final double DIRTY_RATIO_LIMIT = 0.25;
+    private static final long FLUSH_INTERVAL_MILLIS = 100;
+    private static final double COMPACTION_THRESHOLD = 0.5;
+    // 连续顺序读取这么多页后开始预读
+    private static final int SEQUENTIAL_TRIGGER = 4;
+    // 预读窗口页数，一次预读即一次连续读取；不超过缓冲池容量的四分之一
+    private static final int READ_AHEAD_PAGES = 64;
+    private static final int READ_AHEAD_THREADS = 2;
+    private static final int READ_AHEAD_QUEUE_SIZE = 16;
+    // 异步 I/O 的线程数决定同时在设备上排队的请求数
+    private static final int IO_THREADS = 8;
+    private static final int IO_QUEUE_SIZE = 256;
+    // 扫描超过缓冲池的这个比例时使用环形缓冲，环的页帧数
+    private static final int SCAN_RING_DIVISOR = 4;
+    private static final int SCAN_RING_SIZE = 32;
+    public static final String BUFFER_POOL_DUMP_FILE = "bufferpool.dump";
+    private static final long BUFFER_POOL_DUMP_INTERVAL_SECONDS = 60;
 
     public PageManagerImpl(String dataFilePath) throws IOException {
+        this(dataFilePath, MAX_CACHE_SIZE);
+    }
+
+    public PageManagerImpl(String dataFilePath, int cacheSize) throws IOException {
+        this(dataFilePath, cacheSize, PageIOMode.BUFFERED);
+    }
+
+    public PageManagerImpl(String dataFilePath, int cacheSize, PageIOMode ioMode) throws IOException {
+        this(dataFilePath, cacheSize, ioMode, null);
+    }
+
+    /**
+     * @param logManager 用于写页面前按 pageLSN 刷日志，为空时不检查 WAL
+     */
+    public PageManagerImpl(String dataFilePath, int cacheSize, PageIOMode ioMode, LogManager logManager) throws IOException {
+        this(dataFilePath, cacheSize, ioMode, logManager, Page.DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * @param pageSize 新建数据库时使用的页面大小；打开已有数据库时忽略，使用建库时的页面大小
+     */
+    public PageManagerImpl(String dataFilePath, int cacheSize, PageIOMode ioMode, LogManager logManager, int pageSize) throws IOException {
         this.dataFilePath = dataFilePath;
-        File file = new File(dataFilePath);
-        if (!file.exists()) {
-            file.createNewFile();
+        this.logManager = logManager;
+        Path path = Paths.get(dataFilePath);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.pageSize = resolvePageSize(path, pageSize);
+        this.pageStore = new SegmentedPageStore(path, this.pageSize, file -> switch (ioMode) {
+            case BUFFERED -> new FilePageStore(file, this.pageSize);
+            case MMAP -> new MappedPageStore(file, this.pageSize);
+            case DIRECT -> new DirectPageStore(file, this.pageSize);
+        });
+        // 旧版本只给运行中的快照使用，重启后没有快照需要它们：上次运行的 UNDO 段清空后沿用原段号，
+        // 段号不会随重启次数耗尽
+        int undoSegment = pageStore.getUndoSegmentId();
+        if (undoSegment != 0) {
+            pageStore.resetSegment(undoSegment);
+        }
+        // 直接 I/O 时页帧是对齐的堆外缓冲区，读写页面不经过中转复制
+        IntFunction<ByteBuffer> frameAllocator = ioMode == PageIOMode.DIRECT
+                ? DirectPageStore::allocateAligned : ByteBuffer::allocate;
+        this.bufferPool = new BufferPool(cacheSize, this.pageSize, this::writePage, frameAllocator);
+        this.pageFlusher = new PageFlusher(bufferPool, pageStore, logManager,
+                this.pageSize, DIRTY_RATIO_LIMIT, FLUSH_INTERVAL_MILLIS, frameAllocator);
+        bufferPool.setDirtyPressureHandler(pageFlusher::wake);
+        pageFlusher.start();
+        this.readAheadExecutor = new ThreadPoolExecutor(READ_AHEAD_THREADS, READ_AHEAD_THREADS,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(READ_AHEAD_QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "page-read-ahead");
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.DiscardPolicy());
+        readAheadExecutor.allowCoreThreadTimeOut(true);
+        this.ioExecutor = new ThreadPoolExecutor(IO_THREADS, IO_THREADS,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(IO_QUEUE_SIZE), r -> {
+                    Thread t = new Thread(r, "page-io");
+                    t.setDaemon(true);
+                    return t;
+                }, (task, executor) -> {
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("页面管理器已关闭");
+                    }
+                    task.run();
+                });
+        ioExecutor.allowCoreThreadTimeOut(true);
+        this.metricsName = registerMetrics();
+        this.bufferPoolDumpPath = path.toAbsolutePath().resolveSibling(BUFFER_POOL_DUMP_FILE);
+        this.bufferPoolDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "buffer-pool-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        bufferPoolDumper.execute(this::restoreBufferPool);
+        bufferPoolDumper.scheduleWithFixedDelay(this::dumpBufferPoolQuietly,
+                BUFFER_POOL_DUMP_INTERVAL_SECONDS, BUFFER_POOL_DUMP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 按上次的转储预热缓冲池：页号排序后合并为大块顺序读，只填空闲页帧，关闭时中途停止
+     */
+    private void restoreBufferPool() {
+        try {
+            BufferPoolDump dump = BufferPoolDump.read(bufferPoolDumpPath);
+            if (dump == null || dump.size() == 0) {
+                return;
+            }
+            long start = System.nanoTime();
+            int loaded = bufferPool.restore(dump, this::loadRun, READ_AHEAD_PAGES, bufferPoolDumper::isShutdown);
+            log.info("按转储预热缓冲池：转储 {} 页，读入 {} 页，用时 {} ms",
+                    dump.size(), loaded, (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("预热缓冲池失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 把当前驻留页面的页号按热度写入转储文件
+     */
+    public void dumpBufferPool() throws IOException {
+        bufferPool.dump().write(bufferPoolDumpPath);
+    }
+
+    private void dumpBufferPoolQuietly() {
+        try {
+            dumpBufferPool();
+        } catch (IOException | RuntimeException e) {
+            log.warn("转储缓冲池失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 已有数据库的页面大小以超级块为准（没有超级块的旧版文件是 4KB），与请求的不同时记录警告
+     */
+    private static int resolvePageSize(Path path, int requested) throws IOException {
+        Page.checkPageSize(requested);
+        int stored = SegmentedPageStore.storedPageSize(path);
+        if (stored == 0 && Files.exists(path) && Files.size(path) > 0) {
+            stored = Page.DEFAULT_PAGE_SIZE;
+        }
+        if (stored == 0) {
+            return requested;
+        }
+        if (stored != requested) {
+            log.warn("数据文件 {} 的页面大小为 {}，忽略配置的 {}", path, stored, requested);
+        }
+        return Page.checkPageSize(stored);
+    }
+
+    /**
+     * 打开数据文件前确定页面大小，供建库前需要知道页面大小的组件（如日志）使用
+     * @return 已有数据库的页面大小，新数据库返回 requested
+     */
+    public static int pageSizeOf(String dataFilePath, int requested) throws IOException {
+        return resolvePageSize(Paths.get(dataFilePath), requested);
+    }
+
+    /**
+     * 把缓冲池指标注册为 MBean，同一进程内打开同一个数据文件两次时后一个不注册
+     */
+    private ObjectName registerMetrics() {
+        try {
+            ObjectName name = new ObjectName("org.lupenghan.eazydb:type=BufferPool,name="
+                    + ObjectName.quote(Paths.get(dataFilePath).toAbsolutePath().normalize().toString()));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.registerMBean(new StandardMBean(bufferPool.getMetrics(), BufferPoolMetricsMBean.class), name);
+            return name;
+        } catch (JMException e) {
+            log.warn("注册缓冲池指标 MBean 失败: {}", e.getMessage());
+            return null;
         }
-        this.dataFile = new RandomAccessFile(dataFilePath, "rw");
-        this.pageCache = new HashMap<>();
-        this.nextPageId = new AtomicInteger(0);
     }
 
+    private void unregisterMetrics() {
+        if (metricsName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            log.warn("注销缓冲池指标 MBean 失败: {}", e.getMessage());
+        }
+    }
+
+
+
+    @Override
+    public Page createPage() throws IOException {
+        return createPage(PageId.LEGACY_SEGMENT);
+    }
+
+    @Override
+    public Page createPage(int segmentId) throws IOException {
+        int pageNo = pageStore.segment(segmentId).allocatePage();
+        return bufferPool.create(PageId.of(segmentId, pageNo));
+    }
+
+    @Override
+    public int createSegment() throws IOException {
+        return createSegment(false);
+    }
+
+    @Override
+    public int createSegment(boolean compressed) throws IOException {
+        return pageStore.createSegment(compressed);
+    }
 
+    @Override
+    public void dropSegment(int segmentId) throws IOException {
+        // 先把该段的页面移出缓冲池，残留的脏页不再写回
+        bufferPool.discard(pageId -> PageId.segment(pageId) == segmentId);
+        pageStore.dropSegment(segmentId);
+    }
 
     @Override
-    public Page createPage() {
-        int pageId = nextPageId.incrementAndGet();
-        Page page = new Page(pageId);
-        pageCache.put(pageId, page);
-        return page;
+    public int openUndoSegment() throws IOException {
+        synchronized (pageStore) {
+            int segmentId = pageStore.getUndoSegmentId();
+            if (segmentId == 0) {
+                segmentId = pageStore.createSegment(false);
+                pageStore.setUndoSegmentId(segmentId);
+            }
+            return segmentId;
+        }
+    }
 
+    @Override
+    public int getPageCount(int segmentId) throws IOException {
+        Segment segment = pageStore.findSegment(segmentId);
+        return segment == null ? 0 : segment.getLastPageNo();
     }
 
     @Override
     public Page readPage(int pageId) throws IOException {
-        Page page = pageCache.get(pageId);
-        if (page != null) {
-            page.updateLastAccessTime();
-            return page;
+        return readPage(pageId, null);
+    }
+
+    @Override
+    public Page readPage(int pageId, BufferAccessStrategy strategy) throws IOException {
+        long start = System.nanoTime();
+        try {
+            trackSequential(pageId);
+            return bufferPool.fetch(pageId, this::loadPage, strategy);
+        } finally {
+            bufferPool.getMetrics().recordReadPage(System.nanoTime() - start);
         }
-        long offset = (long) pageId * PAGE_SIZE;
-        if (offset >= dataFile.length()) {
+    }
+
+    @Override
+    public <T> T readPage(int pageId, BufferAccessStrategy strategy, Function<Page, T> reader) throws IOException {
+        long start = System.nanoTime();
+        try {
+            trackSequential(pageId);
+            return bufferPool.read(pageId, this::loadPage, strategy, reader);
+        } finally {
+            bufferPool.getMetrics().recordReadPage(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Page> readPageAsync(int pageId) {
+        if (ioExecutor.isShutdown()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException("页面管理器已关闭"));
+        }
+        long start = System.nanoTime();
+        Page resident = bufferPool.fetchIfResident(pageId);
+        if (resident != null) {
+            bufferPool.getMetrics().recordReadPage(System.nanoTime() - start);
+            return CompletableFuture.completedFuture(resident);
+        }
+        // 不经过 trackSequential：I/O 线程由所有调用方共用，按线程识别顺序扫描没有意义
+        return submitIO(() -> {
+            try {
+                return bufferPool.fetch(pageId, this::loadPage);
+            } finally {
+                bufferPool.getMetrics().recordReadPage(System.nanoTime() - start);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> writePageAsync(Page page) {
+        // 已被淘汰的页面由淘汰方写回
+        if (!page.tryPin()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> future = submitIO(() -> {
+            long stamp = page.latchShared();
+            try {
+                writePage(page);
+                return null;
+            } finally {
+                page.unlatchShared(stamp);
+            }
+        });
+        return future.whenComplete((result, e) -> page.unpin());
+    }
+
+    private <T> CompletableFuture<T> submitIO(IOTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            ioExecutor.execute(() -> {
+                try {
+                    future.complete(task.run());
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public BufferAccessStrategy scanStrategy(int pageCount) {
+        int capacity = bufferPool.capacity();
+        if (pageCount <= capacity / SCAN_RING_DIVISOR) {
             return null;
         }
-        dataFile.seek(offset);
-        byte[] pageData = new byte[PAGE_SIZE];
-        dataFile.readFully(pageData);
+        return new BufferAccessStrategy(Math.max(1, Math.min(SCAN_RING_SIZE, capacity / 8)));
+    }
 
-        page = parsePageData(pageId, pageData);
-        page.setDirty(false);
+    @Override
+    public void readAhead(int firstPageId, int lastPageId) {
+        ScanState state = scanState.get();
+        state.lastPageId = firstPageId - 1;
+        state.sequentialCount = SEQUENTIAL_TRIGGER;
+        state.prefetchedUpTo = firstPageId - 1;
+        state.limit = lastPageId;
+        prefetchFrom(state, firstPageId - 1);
+    }
+
+    /**
+     * 记录当前线程的访问模式，连续顺序读取时在消费到窗口一半时提前预读下一个窗口
+     */
+    private void trackSequential(int pageId) {
+        ScanState state = scanState.get();
+        if (pageId == state.lastPageId + 1) {
+            state.sequentialCount++;
+        } else {
+            // 访问不再连续，扫描提示随之失效
+            state.sequentialCount = 0;
+            state.prefetchedUpTo = pageId;
+            state.limit = 0;
+        }
+        state.lastPageId = pageId;
+        if (state.sequentialCount >= SEQUENTIAL_TRIGGER
+                && pageId + readAheadWindow() / 2 >= state.prefetchedUpTo) {
+            prefetchFrom(state, pageId);
+        }
+    }
 
-        // 更新缓存 简单实现LRU减少缓存
-        if (pageCache.size() >= MAX_CACHE_SIZE) {
-            evictPage();
+    private void prefetchFrom(ScanState state, int pageId) {
+        int limit = state.limit;
+        if (limit <= 0) {
+            // 没有扫描提示时预读到当前段的最后一页为止
+            int segmentId = PageId.segment(pageId);
+            try {
+                limit = PageId.of(segmentId, getPageCount(segmentId));
+            } catch (IOException e) {
+                return;
+            }
         }
-        pageCache.put(pageId, page);
+        int from = Math.max(state.prefetchedUpTo, pageId) + 1;
+        int to = Math.min(pageId + readAheadWindow(), limit);
+        if (from > to) {
+            return;
+        }
+        state.prefetchedUpTo = to;
+        int count = to - from + 1;
+        readAheadExecutor.execute(() -> {
+            try {
+                bufferPool.prefetch(from, count, this::loadRun);
+            } catch (IOException | RuntimeException e) {
+                // 预读失败不影响正确性，读页面时会同步加载
+                log.warn("预读页面 {}..{} 失败", from, to, e);
+            }
+        });
+    }
 
-        return page;
+    private int readAheadWindow() {
+        return Math.max(1, Math.min(READ_AHEAD_PAGES, bufferPool.capacity() / 4));
+    }
+
+    @Override
+    public void unpinPage(Page page) {
+        if (page != null) {
+            bufferPool.unpin(page);
+        }
     }
 
 
@@ -85,16 +463,80 @@ public class PageManagerImpl implements PageManager {
             return;
         }
 
-        long offset = (long) page.getHeader().getPageId() * PAGE_SIZE;
-        dataFile.seek(offset);
-        byte[] pageData = serializePage(page);
-        dataFile.write(pageData);
+        if (logManager != null) {
+            logManager.flushUpTo(page.getHeader().getPageLSN());
+        }
+        // 页面本身就是磁盘格式，直接写出缓冲区
+        long start = System.nanoTime();
+        pageStore.write(page.getHeader().getPageId(), page.getBuffer().duplicate().clear());
+        BufferPoolMetrics metrics = bufferPool.getMetrics();
+        metrics.recordWritePage(System.nanoTime() - start);
+        metrics.recordWrites(1);
         page.setDirty(false);
     }
 
+    /**
+     * 检查点：先刷日志，再把所有脏页写回，之后记录的 LSN 之前的修改都已在数据文件中，恢复可以从这里开始
+     */
+    @Override
+    public long checkpoint() throws IOException {
+        long lsn = 0;
+        if (logManager != null) {
+            logManager.flush();
+            lsn = logManager.getFlushedLSN();
+        }
+        flushAll();
+        pageStore.setCheckpointLSN(lsn);
+        pageStore.sync();
+        return lsn;
+    }
+
+    @Override
+    public long getCheckpointLSN() {
+        return pageStore.getCheckpointLSN();
+    }
+
+    @Override
+    public void flushAll() throws IOException {
+        pageFlusher.flush(pageFlusher.dirtyPages());
+        pageStore.sync();
+        for (FreeSpaceMap fsm : freeSpaceMaps.values()) {
+            fsm.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 不能中断预读线程：FileChannel 读写中被中断会关闭整个通道
+        readAheadExecutor.shutdown();
+        bufferPoolDumper.shutdown();
+        ioExecutor.shutdown();
+        try {
+            readAheadExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            bufferPoolDumper.awaitTermination(5, TimeUnit.SECONDS);
+            ioExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dumpBufferPoolQuietly();
+        pageFlusher.stop();
+        checkpoint();
+        for (FreeSpaceMap fsm : freeSpaceMaps.values()) {
+            fsm.close();
+        }
+        freeSpaceMaps.clear();
+        pageStore.close();
+        unregisterMetrics();
+    }
+
+    @Override
+    public BufferPoolStats getBufferPoolStats() {
+        return bufferPool.getMetrics().snapshot();
+    }
+
     @Override
     public int getTotalPages() {
-        return nextPageId.get();
+        return pageStore.legacySegment().getLastPageNo();
     }
 
 
@@ -102,211 +544,87 @@ public class PageManagerImpl implements PageManager {
     public void setPageType(Page page, byte type) {
         page.getHeader().setPageType(type);
         page.setDirty(true);
-        page.updateLastAccessTime();
     }
 
 
-    //压缩页面并未实现
     @Override
-    public void compactPage(Page page) {
-        page.setDirty(true);
+    public int findPageWithSpace(String tableName, int needed, int afterPageId) throws IOException {
+        return freeSpaceMap(tableName).findPage(needed, afterPageId);
     }
 
     @Override
-    public boolean needsCompaction(Page page) {
-        // 如果碎片化程度超过50%，则需要压缩
-//        int totalFreeSpace = page.getFreeSpaceDirectory().stream()
-//                .mapToInt(FreeSpaceEntry::getLength)
-//                .sum();
-//        return totalFreeSpace > 0 &&
-//                (double)totalFreeSpace / (page.getRecords().size() * 100) > 0.5;
-        return false;
-    }
-
-    private Page parsePageData(int pageId, byte[] pageData) {
-        ByteBuffer buffer = ByteBuffer.wrap(pageData);
-
-        // 创建页面对象
-        Page page = new Page(pageId);
-        PageHead header = page.getHeader();
-
-        // 解析页面头部
-        header.setPageId(buffer.getInt());
-        header.setFileOffset(buffer.getLong());
-        header.setPageLSN(buffer.getLong());
-        header.setPageType(buffer.get());
-
-        header.setFreeSpacePointer(buffer.getShort());
-        header.setSlotCount(buffer.getInt());
-        header.setRecordCount(buffer.getInt());
-        header.setChecksum(buffer.getInt());
-        header.setVersion(buffer.getLong());
-        header.setCreateTime(buffer.getLong());
-        header.setLastModifiedTime(buffer.getLong());
-        header.setLeaf(buffer.get()==1);
-        header.setKeyCount(buffer.getInt());
-        // 解析槽位目录
-        int slotCount = header.getSlotCount();
-        List<SlotDirectoryEntry> slotDirectory = new ArrayList<>(slotCount);
-        for (int i = 0; i < slotCount; i++) {
-            SlotDirectoryEntry entry = new SlotDirectoryEntry();
-            entry.setOffset(buffer.getInt());
-            entry.setInUse(buffer.get() == 1);
-            entry.setReserved1(buffer.get());
-            entry.setReserved2(buffer.getShort());
-            slotDirectory.add(entry);
-        }
-        page.setSlotDirectory(slotDirectory);
-
-
-        // 解析记录
-        int recordCount = header.getRecordCount();
-        List<Record> records = new ArrayList<>(recordCount);
-        for (int i = 0; i < recordCount; i++) {
-            Record record = new Record();
-            record.setLength(buffer.getShort());
-            record.setStatus(buffer.get());
-            record.setXid(buffer.getLong());
-            record.setBeginTS(buffer.getLong());
-            record.setEndTS(buffer.getLong());
-            record.setPrevVersionPointer(buffer.getLong());
-            record.setPageId(buffer.getInt());
-            record.setSlotId(buffer.getInt());
-
-//            // 读取null位图
-//            int nullBitmapLength = (recordCount + 7) / 8;
-//            byte[] nullBitmap = new byte[nullBitmapLength];
-//            buffer.get(nullBitmap);
-//            record.setNullBitmap(nullBitmap);
-//
-//            // 读取字段偏移
-//            int fieldCount = buffer.getShort();
-//            short[] fieldOffsets = new short[fieldCount];
-//            for (int j = 0; j < fieldCount; j++) {
-//                fieldOffsets[j] = buffer.getShort();
-//            }
-//            record.setFieldOffsets(fieldOffsets);
-            record.setNullBitmap(new byte[]{buffer.get()});
-            record.setFieldOffsets(new short[]{buffer.getShort()});
-            // 读取记录数据
-            byte[] data = new byte[record.getLength()- 45];
-            buffer.get(data);
-            record.setData(data);
-
-            // 设置记录引用
-            record.setPageId(pageId);
-            record.setSlotId(i);
-
-            records.add(record);
-        }
-        page.setRecords(records);
-
-        return page;
-    }
-    private void evictPage() {
-        // 简单的LRU策略
-        long oldestTime = Long.MAX_VALUE;
-        int pageIdToEvict = -1;
-
-        for (Map.Entry<Integer, Page> entry : pageCache.entrySet()) {
-            Page page = entry.getValue();
-            if (page.getPinCount() == 0 && page.getLastAccessTime() < oldestTime) {
-                oldestTime = page.getLastAccessTime();
-                pageIdToEvict = entry.getKey();
-            }
+    public void updateFreeSpace(String tableName, Page page) throws IOException {
+        // 统计碎片时可能按槽位重建页面的空闲空间列表，清理线程也在并发修改页面，要在排他闩下进行
+        int freeBytes;
+        long stamp = page.latchExclusive();
+        try {
+            freeBytes = page.getFreeSpace() + page.getFragmentedSpace();
+        } finally {
+            page.unlatchExclusive(stamp);
         }
+        freeSpaceMap(tableName).update(page.getHeader().getPageId(), freeBytes);
+    }
 
-        if (pageIdToEvict != -1) {
-            Page page = pageCache.remove(pageIdToEvict);
-            if (page.isDirty()) {
-                try {
-                    writePage(page);
-                } catch (IOException e) {
-                    // 处理写入失败的情况
-                    e.printStackTrace();
-                }
-            }
+    @Override
+    public void dropFreeSpaceMap(String tableName) throws IOException {
+        FreeSpaceMap fsm = freeSpaceMaps.remove(tableName);
+        if (fsm != null) {
+            fsm.close();
         }
+        Files.deleteIfExists(freeSpaceMapPath(tableName));
     }
-    /**
-     * 序列化页面数据
-     */
-    private byte[] serializePage(Page page) {
-        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
-        PageHead header = page.getHeader();
-
-        // 序列化页面头部
-        buffer.putInt(header.getPageId());
-        buffer.putLong(header.getFileOffset());
-        buffer.putLong(header.getPageLSN());
-        buffer.put(header.getPageType());
-        buffer.putShort(header.getFreeSpacePointer());
-        buffer.putInt(header.getSlotCount());
-        buffer.putInt(header.getRecordCount());
-        buffer.putInt(header.getChecksum());
-        buffer.putLong(header.getVersion());
-        buffer.putLong(header.getCreateTime());
-        buffer.putLong(header.getLastModifiedTime());
-        buffer.put((byte) (header.isLeaf() ? 1 : 0));
-        buffer.putInt(header.getKeyCount());
-        // 序列化槽位目录
-        for (SlotDirectoryEntry entry : page.getSlotDirectory()) {
-            buffer.putInt( entry.getOffset());
-            buffer.put((byte)(entry.isInUse() ? 1 : 0));
-            buffer.put( entry.getReserved1());
-            buffer.putShort(entry.getReserved2());
-
-        }
-
-
-        // 序列化记录
-        for (Record record : page.getRecords()) {
-            buffer.putInt(record.getLength());
-            buffer.put(record.getStatus());
-            buffer.putLong(record.getXid());
-            buffer.putLong(record.getBeginTS());
-            buffer.putLong(record.getEndTS());
-            buffer.putLong(record.getPrevVersionPointer());
-            buffer.putInt(record.getPageId());
-            buffer.putInt(record.getSlotId());
-
-//            // 写入null位图（确保不为null）
-//            byte[] nullBitmap = record.getNullBitmap();
-//            if (nullBitmap == null) {
-//                // 如果nullBitmap为null，创建一个空位图（全为0，表示没有NULL值）
-//                int nullBitmapLength = (page.getRecords().size() + 7) / 8;
-//                nullBitmap = new byte[nullBitmapLength > 0 ? nullBitmapLength : 1];
-//            }
-//            buffer.put(nullBitmap);
-//
-//            // 写入字段偏移（确保不为null）
-//            short[] fieldOffsets = record.getFieldOffsets();
-//            if (fieldOffsets == null) {
-//                fieldOffsets = new short[0];
-//            }
-//            buffer.putShort((short)fieldOffsets.length);
-//            for (short offset : fieldOffsets) {
-//                buffer.putShort(offset);
-//            }
-            //暂时简化
-            byte[] nullBitmap = new byte[1];
-            short[] fieldOffsets = new short[] {0};
-            buffer.put((byte) 1);
-            buffer.putShort((short) 0);
-            // 写入记录数据（确保不为null）
-            byte[] data = record.getData();
-            if (data == null) {
-                // 如果数据为null，使用空数组
-                data = new byte[0];
+
+    private FreeSpaceMap freeSpaceMap(String tableName) throws IOException {
+        FreeSpaceMap fsm = freeSpaceMaps.get(tableName);
+        if (fsm != null) {
+            return fsm;
+        }
+        synchronized (freeSpaceMaps) {
+            fsm = freeSpaceMaps.get(tableName);
+            if (fsm == null) {
+                fsm = new FreeSpaceMap(freeSpaceMapPath(tableName), pageSize);
+                freeSpaceMaps.put(tableName, fsm);
             }
-            buffer.put(data);
+            return fsm;
         }
+    }
+
+    private Path freeSpaceMapPath(String tableName) {
+        Path dataFile = Paths.get(dataFilePath).toAbsolutePath();
+        return dataFile.resolveSibling(tableName + ".fsm");
+    }
+
+    @Override
+    public void compactPage(Page page) {
+        page.compact();
+        page.setDirty(true);
+    }
+
+    @Override
+    public boolean needsCompaction(Page page) {
+        // 空洞占全部空闲空间的比例超过一半时需要压缩
+        int fragmented = page.getFragmentedSpace();
+        return fragmented > 0 && (double) fragmented / (fragmented + page.getFreeSpace()) > COMPACTION_THRESHOLD;
+    }
 
-        // 填充剩余空间
-        while (buffer.position() < PAGE_SIZE) {
-            buffer.put((byte)0);
+    private boolean loadPage(int pageId, ByteBuffer frame) throws IOException {
+        boolean found = pageStore.read(pageId, frame);
+        if (found) {
+            bufferPool.getMetrics().recordReads(1);
         }
+        return found;
+    }
+
+    private int loadRun(int firstPageId, ByteBuffer[] frames) throws IOException {
+        int loaded = pageStore.read(firstPageId, frames);
+        bufferPool.getMetrics().recordReads(loaded);
+        return loaded;
+    }
 
-        return buffer.array();
+    private static class ScanState {
+        int lastPageId = -1;
+        int sequentialCount;
+        int prefetchedUpTo;  // 已提交预读的最大页号
+        int limit;           // 扫描提示给出的最后一页，0 表示没有提示
     }
 }
@@ -0,0 +1,253 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+import org.lupenghan.eazydb.page.models.PageId;
+import org.lupenghan.eazydb.page.models.SegmentHeader;
+import org.lupenghan.eazydb.page.models.Superblock;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * 段：一张表（以后也包括索引）独占的页面文件。
+ * 第 0 页是段头（见 SegmentHeader），数据页为 1..lastPageNo。
+ * 文件按区（EXTENT_PAGES 个连续页面）预先扩展，区内增长不修改文件长度。
+ * 段 0 是共用的 page.page，第 0 页是超级块，同样包含段头字段。
+ */
+public class Segment implements Closeable {
+    public static final int EXTENT_PAGES = 64;
+
+    private final int id;
+    private final PageStore store;
+    private final int pageSize;
+    // 第 0 页在内存中的副本，写段头时整页写出
+    private final SegmentHeader header;
+    private volatile int lastPageNo;
+    private int extentCount;
+    private boolean headerDirty;
+
+    private Segment(int id, PageStore store, int pageSize, SegmentHeader header) {
+        this.id = id;
+        this.store = store;
+        this.pageSize = pageSize;
+        this.header = header;
+        this.lastPageNo = header.getLastPageNo();
+        this.extentCount = header.getExtentCount();
+    }
+
+    /**
+     * 新建段：写入段头并预分配第一个区
+     * @param compressed 数据页是否压缩存放，store 需为对应的 CompressedPageStore
+     */
+    public static Segment create(int id, PageStore store, int pageSize, boolean compressed) throws IOException {
+        SegmentHeader header = new SegmentHeader(ByteBuffer.allocate(pageSize));
+        header.setMagic(SegmentHeader.MAGIC);
+        header.setSegmentId(id);
+        header.setExtentPages(EXTENT_PAGES);
+        header.setExtentCount(1);
+        header.setFlags(compressed ? SegmentHeader.FLAG_COMPRESSED : 0);
+        store.preallocate(EXTENT_PAGES);
+        Segment segment = new Segment(id, store, pageSize, header);
+        segment.writeHeader();
+        return segment;
+    }
+
+    /**
+     * 打开已有的段
+     */
+    public static Segment open(int id, PageStore store, int pageSize) throws IOException {
+        SegmentHeader header = new SegmentHeader(readHeaderPage(store, pageSize));
+        if (header.getMagic() != SegmentHeader.MAGIC) {
+            throw new IOException("段文件损坏或不是段文件: " + id);
+        }
+        if (header.getSegmentId() != id || header.getExtentPages() != EXTENT_PAGES) {
+            throw new IOException("段头与段号或区大小不匹配: " + id);
+        }
+        if (header.isCompressed() != store instanceof CompressedPageStore) {
+            throw new IOException("段 " + id + " 的压缩标记与页面映射文件不一致，映射文件可能已丢失");
+        }
+        Segment segment = new Segment(id, store, pageSize, header);
+        segment.recoverLastPageNo();
+        return segment;
+    }
+
+    /**
+     * 打开段 0。第 0 页还不是超级块时（新文件或旧版文件，旧版从未使用第 0 页），
+     * 按文件长度一次性初始化超级块，之后启动只读这一页。
+     * @param initialNextSegmentId 初始化超级块时下一个段号的来源
+     */
+    public static Segment openSuperblock(PageStore store, int pageSize, IntSupplier initialNextSegmentId) throws IOException {
+        ByteBuffer page = readHeaderPage(store, pageSize);
+        Superblock superblock = new Superblock(page);
+        if (superblock.getMagic() == Superblock.MAGIC) {
+            if (superblock.getFormatVersion() != Superblock.FORMAT_VERSION) {
+                throw new IOException("不支持的数据文件格式版本: " + superblock.getFormatVersion());
+            }
+            if (superblock.getPageSize() != pageSize) {
+                throw new IOException("数据文件页面大小为 " + superblock.getPageSize() + "，与配置的 " + pageSize + " 不一致");
+            }
+            Segment segment = new Segment(PageId.LEGACY_SEGMENT, store, pageSize, superblock);
+            segment.recoverLastPageNo();
+            return segment;
+        }
+        if (!isZero(page)) {
+            throw new IOException("无法识别的数据文件：第 0 页既不是超级块也不为空");
+        }
+        int lastPageNo = (int) Math.max(0, store.size() / pageSize - 1);
+        superblock.setMagic(Superblock.MAGIC);
+        superblock.setSegmentId(PageId.LEGACY_SEGMENT);
+        superblock.setLastPageNo(lastPageNo);
+        superblock.setExtentPages(EXTENT_PAGES);
+        superblock.setExtentCount(lastPageNo / EXTENT_PAGES + 1);
+        superblock.setFormatVersion(Superblock.FORMAT_VERSION);
+        superblock.setPageSize(pageSize);
+        superblock.setNextSegmentId(initialNextSegmentId.getAsInt());
+        store.preallocate((long) superblock.getExtentCount() * EXTENT_PAGES);
+        Segment segment = new Segment(PageId.LEGACY_SEGMENT, store, pageSize, superblock);
+        segment.writeHeader();
+        store.sync();
+        return segment;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public PageStore getStore() {
+        return store;
+    }
+
+    public SegmentHeader getHeader() {
+        return header;
+    }
+
+    public boolean isCompressed() {
+        return header.isCompressed();
+    }
+
+    public int getLastPageNo() {
+        return lastPageNo;
+    }
+
+    /**
+     * 分配下一个页号，用完当前区时先扩展文件并写回段头
+     */
+    public synchronized int allocatePage() throws IOException {
+        int pageNo = lastPageNo + 1;
+        if (pageNo > PageId.MAX_PAGE_NO) {
+            throw new IllegalStateException("段 " + id + " 页面数已达上限");
+        }
+        lastPageNo = pageNo;
+        if (pageNo >= extentCount * EXTENT_PAGES) {
+            store.preallocate((long) (extentCount + 1) * EXTENT_PAGES);
+            extentCount++;
+            writeHeader();
+        } else {
+            headerDirty = true;
+        }
+        return pageNo;
+    }
+
+    /**
+     * 读取段内页面，超出已分配范围的页面视为不存在；已分配但从未写出的页面（崩溃前刚分配，
+     * 磁盘上还是预分配的空白页）页头页号与页号不符，同样视为不存在
+     */
+    public boolean read(int pageNo, ByteBuffer dst) throws IOException {
+        if (pageNo < 1 || pageNo > lastPageNo) {
+            return false;
+        }
+        int start = dst.position();
+        return store.read(pageNo, dst) && isWritten(pageNo, dst, start);
+    }
+
+    /**
+     * 读取从 firstPageNo 开始的连续页面，返回读到的页数，遇到第一个不存在的页面为止
+     */
+    public int read(int firstPageNo, ByteBuffer[] pages) throws IOException {
+        if (firstPageNo < 1) {
+            return 0;
+        }
+        int count = Math.max(0, Math.min(pages.length, lastPageNo - firstPageNo + 1));
+        if (count == 0) {
+            return 0;
+        }
+        ByteBuffer[] targets = count == pages.length ? pages : Arrays.copyOf(pages, count);
+        int[] starts = new int[count];
+        for (int k = 0; k < count; k++) {
+            starts[k] = targets[k].position();
+        }
+        int read = store.read(firstPageNo, targets);
+        for (int k = 0; k < read; k++) {
+            if (!isWritten(firstPageNo + k, targets[k], starts[k])) {
+                return k;
+            }
+        }
+        return read;
+    }
+
+    // 页头开头是全局页号，写出过的页面一定与页号一致
+    private boolean isWritten(int pageNo, ByteBuffer page, int start) {
+        return page.getInt(start) == PageId.of(id, pageNo);
+    }
+
+    /**
+     * 把段头（含调用方修改过的超级块字段）写回第 0 页
+     */
+    public synchronized void writeHeader() throws IOException {
+        header.setLastPageNo(lastPageNo);
+        header.setExtentCount(extentCount);
+        store.write(0, header.getBuffer().duplicate().clear());
+        headerDirty = false;
+    }
+
+    /**
+     * 写回段头并刷盘
+     */
+    public synchronized void flush() throws IOException {
+        if (headerDirty) {
+            writeHeader();
+        }
+        store.sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        store.close();
+    }
+
+    private static ByteBuffer readHeaderPage(PageStore store, int pageSize) throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(pageSize);
+        store.read(0, page);
+        return page;
+    }
+
+    private static boolean isZero(ByteBuffer page) {
+        for (int i = 0; i < page.capacity(); i++) {
+            if (page.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 段头中的最大页号只在分配新区和刷盘时写回，崩溃后已预分配的区中可能还有写出过的新页面，
+     * 按页头中的全局页号探测补回，最多读一个区
+     */
+    private void recoverLastPageNo() throws IOException {
+        ByteBuffer page = ByteBuffer.allocate(pageSize);
+        int limit = Math.min(extentCount * EXTENT_PAGES, PageId.MAX_PAGE_NO + 1);
+        for (int pageNo = lastPageNo + 1; pageNo < limit; pageNo++) {
+            page.clear();
+            // 页头开头是全局页号，未写过的预分配页面全为 0
+            if (store.read(pageNo, page) && isWritten(pageNo, page, 0)) {
+                lastPageNo = pageNo;
+                headerDirty = true;
+            }
+        }
+    }
+}
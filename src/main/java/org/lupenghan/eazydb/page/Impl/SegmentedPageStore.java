@@ -0,0 +1,258 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageStore;
+import org.lupenghan.eazydb.page.models.PageId;
+import org.lupenghan.eazydb.page.models.Superblock;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按全局页号的段号把读写路由到各个段文件，对缓冲池和刷脏线程来说仍是一个 PageStore。
+ * 段 0 是共用的 page.page，其第 0 页是超级块；其余段位于同一目录下的 <段号>.seg，第一次访问时才打开。
+ * 压缩段另有 <段号>.pmap 页面映射文件，总是用 FileChannel 读写，不受 I/O 模式影响。
+ */
+public class SegmentedPageStore implements PageStore {
+    // 按 I/O 模式打开段文件
+    @FunctionalInterface
+    public interface StoreFactory {
+        PageStore open(Path path) throws IOException;
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    private final int pageSize;
+    private final StoreFactory factory;
+    private final Map<Integer, Segment> segments;
+    private final Segment superSegment;
+    private final Superblock superblock;
+
+    public SegmentedPageStore(Path legacyFile, int pageSize, StoreFactory factory) throws IOException {
+        this.directory = legacyFile.toAbsolutePath().getParent();
+        this.pageSize = pageSize;
+        this.factory = factory;
+        this.segments = new ConcurrentHashMap<>();
+        this.superSegment = Segment.openSuperblock(factory.open(legacyFile), pageSize, this::scanNextSegmentId);
+        this.superblock = (Superblock) superSegment.getHeader();
+        segments.put(PageId.LEGACY_SEGMENT, superSegment);
+    }
+
+    /**
+     * 读出已有数据库超级块中记录的页面大小；文件不存在、为空或是还没有超级块的旧版文件时返回 0
+     */
+    public static int storedPageSize(Path legacyFile) throws IOException {
+        if (!Files.exists(legacyFile)) {
+            return 0;
+        }
+        try (FileChannel channel = FileChannel.open(legacyFile, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(Superblock.SIZE);
+            while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+                // 读满超级块的固定字段
+            }
+            Superblock superblock = new Superblock(head);
+            return superblock.getMagic() == Superblock.MAGIC ? superblock.getPageSize() : 0;
+        }
+    }
+
+    /**
+     * 新建一个段，返回段号；新的段号立即写入超级块
+     * @param compressed 段内数据页是否压缩存放
+     */
+    public synchronized int createSegment(boolean compressed) throws IOException {
+        synchronized (superSegment) {
+            int id = superblock.getNextSegmentId();
+            if (id > PageId.MAX_SEGMENT_ID) {
+                throw new IllegalStateException("段数量已达上限");
+            }
+            Path path = segmentPath(id);
+            PageStore store = compressed
+                    ? new CompressedPageStore(path, CompressedPageStore.mapPath(path), pageSize)
+                    : factory.open(path);
+            segments.put(id, Segment.create(id, store, pageSize, compressed));
+            superblock.setNextSegmentId(id + 1);
+            superSegment.writeHeader();
+            return id;
+        }
+    }
+
+    /**
+     * 删除段文件，调用方需先把该段的页面移出缓冲池
+     */
+    public synchronized void dropSegment(int segmentId) throws IOException {
+        if (segmentId == PageId.LEGACY_SEGMENT) {
+            throw new IllegalArgumentException("不能删除共用的段 0");
+        }
+        Segment segment = segments.remove(segmentId);
+        if (segment != null) {
+            segment.getStore().close();
+        }
+        Files.deleteIfExists(segmentPath(segmentId));
+        Files.deleteIfExists(CompressedPageStore.mapPath(segmentPath(segmentId)));
+    }
+
+    /**
+     * 清空段：删除段文件后按原段号重新建段，段号不变，也不占用新的段号。调用方需先把该段的页面移出缓冲池
+     */
+    public synchronized void resetSegment(int segmentId) throws IOException {
+        dropSegment(segmentId);
+        segments.put(segmentId, Segment.create(segmentId, factory.open(segmentPath(segmentId)), pageSize, false));
+    }
+
+    /**
+     * 查找段，尚未打开的段在这里打开；段不存在（从未分配或已删除）时返回 null
+     */
+    public Segment findSegment(int segmentId) throws IOException {
+        Segment segment = segments.get(segmentId);
+        if (segment != null) {
+            return segment;
+        }
+        synchronized (this) {
+            segment = segments.get(segmentId);
+            if (segment == null && segmentId > PageId.LEGACY_SEGMENT && segmentId < superblock.getNextSegmentId()) {
+                Path path = segmentPath(segmentId);
+                if (Files.exists(path)) {
+                    Path mapPath = CompressedPageStore.mapPath(path);
+                    PageStore store = Files.exists(mapPath)
+                            ? new CompressedPageStore(path, mapPath, pageSize)
+                            : factory.open(path);
+                    segment = Segment.open(segmentId, store, pageSize);
+                    segments.put(segmentId, segment);
+                }
+            }
+            return segment;
+        }
+    }
+
+    public Segment segment(int segmentId) throws IOException {
+        Segment segment = findSegment(segmentId);
+        if (segment == null) {
+            throw new IllegalArgumentException("段不存在: " + segmentId);
+        }
+        return segment;
+    }
+
+    // 段 0 总是打开的
+    public Segment legacySegment() {
+        return superSegment;
+    }
+
+    public long getCheckpointLSN() {
+        synchronized (superSegment) {
+            return superblock.getCheckpointLSN();
+        }
+    }
+
+    /**
+     * 记录检查点 LSN 并写回超级块
+     */
+    public void setCheckpointLSN(long lsn) throws IOException {
+        synchronized (superSegment) {
+            superblock.setCheckpointLSN(lsn);
+            superSegment.writeHeader();
+        }
+    }
+
+    public int getUndoSegmentId() {
+        synchronized (superSegment) {
+            return superblock.getUndoSegmentId();
+        }
+    }
+
+    /**
+     * 记录 UNDO 段号并写回超级块，0 表示没有 UNDO 段
+     */
+    public void setUndoSegmentId(int segmentId) throws IOException {
+        synchronized (superSegment) {
+            superblock.setUndoSegmentId(segmentId);
+            superSegment.writeHeader();
+        }
+    }
+
+    @Override
+    public boolean read(long pageNo, ByteBuffer dst) throws IOException {
+        Segment segment = findSegment(PageId.segment((int) pageNo));
+        return segment != null && segment.read(PageId.pageNo((int) pageNo), dst);
+    }
+
+    @Override
+    public int read(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        Segment segment = findSegment(PageId.segment((int) firstPageNo));
+        if (segment == null) {
+            return 0;
+        }
+        return segment.read(PageId.pageNo((int) firstPageNo), pages);
+    }
+
+    // 段已被删除时其残留的脏页直接丢弃
+    @Override
+    public void write(long pageNo, ByteBuffer src) throws IOException {
+        Segment segment = findSegment(PageId.segment((int) pageNo));
+        if (segment != null) {
+            segment.getStore().write(PageId.pageNo((int) pageNo), src);
+        }
+    }
+
+    // 连续页面的段内页号同样连续：每段第 0 页是段头，不会进入缓冲池，一批页面不会跨段
+    @Override
+    public void write(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        Segment segment = findSegment(PageId.segment((int) firstPageNo));
+        if (segment != null) {
+            segment.getStore().write(PageId.pageNo((int) firstPageNo), pages);
+        }
+    }
+
+    @Override
+    public long size() throws IOException {
+        long total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.getStore().size();
+        }
+        return total;
+    }
+
+    @Override
+    public void sync() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Segment segment : segments.values()) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    // 初始化超级块时（旧版数据目录）按已有的段文件确定下一个段号，只会执行一次
+    private int scanNextSegmentId() {
+        int next = PageId.LEGACY_SEGMENT + 1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    next = Math.max(next, Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())) + 1);
+                } catch (NumberFormatException ignored) {
+                    // 不是段文件
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return next;
+    }
+
+    private Path segmentPath(int segmentId) {
+        return directory.resolve(segmentId + SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,53 @@
+package org.lupenghan.eazydb.page.interfaces;
+
+/**
+ * 缓冲池指标的 JMX 接口，注册为 org.lupenghan.eazydb:type=BufferPool,name=<数据文件>
+ */
+public interface BufferPoolMetricsMBean {
+    int getCapacity();
+
+    int getResidentPages();
+
+    int getDirtyPages();
+
+    long getHits();
+
+    long getMisses();
+
+    //命中率，还没有访问时为 0
+    double getHitRatio();
+
+    long getCleanEvictions();
+
+    long getDirtyEvictions();
+
+    //淘汰时因页面被固定而跳过的页帧数
+    long getPinnedFrameSkips();
+
+    //所有页帧都被固定、淘汰失败的次数
+    long getEvictionFailures();
+
+    long getReads();
+
+    long getReadBytes();
+
+    long getWrites();
+
+    long getWriteBytes();
+
+    long getReadPageP50Micros();
+
+    long getReadPageP99Micros();
+
+    long getWritePageP50Micros();
+
+    long getWritePageP99Micros();
+
+    //readPage 延迟直方图，第 i 个元素是 [2^(i-1), 2^i) 微秒内的次数
+    long[] getReadPageLatencyHistogram();
+
+    long[] getWritePageLatencyHistogram();
+
+    //清零所有计数器
+    void reset();
+}
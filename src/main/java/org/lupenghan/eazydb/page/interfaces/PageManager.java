@@ -1,23 +1,127 @@
 package org.lupenghan.eazydb.page.interfaces;
 
+import org.lupenghan.eazydb.page.models.BufferAccessStrategy;
+import org.lupenghan.eazydb.page.models.BufferPoolStats;
 import org.lupenghan.eazydb.page.models.Page;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
 public interface PageManager {
-    Page createPage();
+    /**
+     * 创建新页面，返回的页面已被固定，使用完毕后需调用 unpinPage
+     */
+    Page createPage() throws IOException;
+
+    /**
+     * 在指定段中分配新页面，页号见 PageId.of(segmentId, pageNo)，返回的页面已被固定
+     */
+    Page createPage(int segmentId) throws IOException;
+
+    //新建段（表或索引独占的页面文件），返回段号
+    int createSegment() throws IOException;
+
+    //新建段，compressed 为 true 时段内数据页在磁盘上压缩存放，适合冷表和归档表
+    int createSegment(boolean compressed) throws IOException;
+
+    //删除段及其全部页面
+    void dropSegment(int segmentId) throws IOException;
+
+    /**
+     * 返回存放旧版本的 UNDO 段号，还没有时新建并记入超级块。段内容只在本次运行内有效，
+     * 每次启动时清空，段号一直沿用
+     */
+    int openUndoSegment() throws IOException;
+
+    //段内已分配的数据页数，数据页的段内页号为 1..count
+    int getPageCount(int segmentId) throws IOException;
+
+    /**
+     * 读取页面，返回的页面已被固定，使用完毕后需调用 unpinPage；页面不存在时返回 null
+     */
     Page readPage(int pageId) throws IOException;
 
+    /**
+     * 按访问策略读取页面，大表扫描用它在一小圈页帧内循环，不挤占其他查询的热点页面
+     */
+    Page readPage(int pageId, BufferAccessStrategy strategy) throws IOException;
+
+    /**
+     * 只读访问页面：命中时不固定页面也不加闩，按版本号乐观读取后校验，失败再退回共享闩。
+     * reader 只能读取并复制页面内容，不能保留页面或记录的引用
+     * @param strategy 可为 null
+     * @return reader 的结果，页面不存在时返回 null
+     */
+    <T> T readPage(int pageId, BufferAccessStrategy strategy, Function<Page, T> reader) throws IOException;
+
+    /**
+     * 异步读取页面：已在缓冲池中时直接返回已完成的结果，否则交给页面 I/O 线程池读盘，
+     * 多个读取可以同时发出、在磁盘上重叠执行。结果页面已被固定，使用完毕后需调用 unpinPage；页面不存在时结果为 null
+     */
+    CompletableFuture<Page> readPageAsync(int pageId);
+
+    /**
+     * 为即将顺序扫描 pageCount 个页面的查询创建访问策略；表相对缓冲池不大时返回 null，按普通方式读取
+     */
+    BufferAccessStrategy scanStrategy(int pageCount);
+
+    /**
+     * 扫描提示：当前线程即将按顺序读取 [firstPageId, lastPageId]，后台会提前批量读入后续页面
+     */
+    void readAhead(int firstPageId, int lastPageId);
+
+    //解除固定，之后页面可以被缓冲池淘汰
+    void unpinPage(Page page);
+
     void writePage(Page page) throws IOException;
 
-    //获得总页数
+    /**
+     * 异步写回页面，同样先按 pageLSN 刷日志；写出期间由 I/O 线程固定页面并持有共享闩，调用方不必等待
+     */
+    CompletableFuture<Void> writePageAsync(Page page);
+
+    //把缓冲池中所有脏页写回磁盘
+    void flushAll() throws IOException;
+
+    /**
+     * 做一次检查点：刷日志和全部脏页，把检查点 LSN 写入超级块
+     * @return 检查点 LSN
+     */
+    long checkpoint() throws IOException;
+
+    //超级块中记录的最近一次检查点 LSN
+    long getCheckpointLSN();
+
+    //停止后台线程并做检查点
+    void close() throws IOException;
+
+    //数据库的页面大小，建库时选定
+    int getPageSize();
+
+    //缓冲池命中、淘汰和页面 I/O 指标的快照
+    BufferPoolStats getBufferPoolStats();
+
+    //获得段 0（旧版共用文件）的总页数
     int getTotalPages();
     //设置页面类型
     void setPageType(Page page, byte type);
 
-    //压缩页面
+    /**
+     * 通过表的空闲空间映射查找 pageId 大于 afterPageId、至少有 needed 字节空闲的页面
+     * @return 页面号，没有时返回 -1，调用方应新建页面
+     */
+    int findPageWithSpace(String tableName, int needed, int afterPageId) throws IOException;
+
+    //页面空间变化后（插入、删除、新建）更新表的空闲空间映射；会加页面的排他闩，调用方不能持有该页面的闩
+    void updateFreeSpace(String tableName, Page page) throws IOException;
+
+    //删除表的空闲空间映射
+    void dropFreeSpaceMap(String tableName) throws IOException;
+
+    //压缩页面，调用方需持有页面的排他闩
     void compactPage(Page page);
-    //检查页面是否需要压缩
+    //检查页面是否需要压缩，调用方需持有页面的排他闩
     boolean needsCompaction(Page page);
 
 
@@ -0,0 +1,50 @@
+package org.lupenghan.eazydb.page.interfaces;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 页面文件的物理读写，文件格式固定为第 pageNo 页位于 pageNo * pageSize 处
+ */
+public interface PageStore extends Closeable {
+    /**
+     * 读取一页到 dst 的剩余空间中
+     * @return 页面超出文件范围时返回 false
+     */
+    boolean read(long pageNo, ByteBuffer dst) throws IOException;
+
+    /**
+     * 从 firstPageNo 开始连续读取多页，实现可以合并为一次分散读
+     * @return 实际位于文件范围内、已读入的页数
+     */
+    default int read(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        int count = 0;
+        while (count < pages.length && read(firstPageNo + count, pages[count])) {
+            count++;
+        }
+        return count;
+    }
+
+    //将 src 的剩余内容写到第 pageNo 页
+    void write(long pageNo, ByteBuffer src) throws IOException;
+
+    /**
+     * 将一组连续页面从 firstPageNo 开始依次写出，实现可以合并为一次聚集写
+     */
+    default void write(long firstPageNo, ByteBuffer[] pages) throws IOException {
+        for (int i = 0; i < pages.length; i++) {
+            write(firstPageNo + i, pages[i]);
+        }
+    }
+
+    //预先把文件扩展到至少 pages 页，之后在这个范围内写页面不再修改文件长度
+    default void preallocate(long pages) throws IOException {
+    }
+
+    //文件当前字节数
+    long size() throws IOException;
+
+    //强制刷盘
+    void sync() throws IOException;
+}
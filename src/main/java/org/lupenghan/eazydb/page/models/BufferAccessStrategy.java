@@ -0,0 +1,42 @@
+package org.lupenghan.eazydb.page.models;
+
+import java.util.Arrays;
+
+/**
+ * 缓冲区访问策略（环形缓冲）：大表顺序扫描只在一小圈页帧里循环使用，
+ * 扫描读过的页面一旦滑出环就被回收，不会把缓冲池中其他查询的热点页面挤出去。
+ * 只属于发起扫描的线程，不需要同步。
+ */
+public class BufferAccessStrategy {
+    public static final long NONE = -1;
+
+    private final int[] frameIds;
+    private final int[] pageIds;
+    private int next;
+
+    public BufferAccessStrategy(int ringSize) {
+        if (ringSize <= 0) {
+            throw new IllegalArgumentException("环大小必须大于 0");
+        }
+        this.frameIds = new int[ringSize];
+        this.pageIds = new int[ringSize];
+        Arrays.fill(frameIds, -1);
+    }
+
+    public int getRingSize() {
+        return frameIds.length;
+    }
+
+    /**
+     * 把扫描刚读过的页面放入环中
+     * @return 被挤出环的 (pageId << 32 | frameId)，环未满时返回 NONE
+     */
+    public long push(int frameId, int pageId) {
+        int slot = next;
+        next = (next + 1) % frameIds.length;
+        long displaced = frameIds[slot] < 0 ? NONE : ((long) pageIds[slot] << 32) | frameIds[slot];
+        frameIds[slot] = frameId;
+        pageIds[slot] = pageId;
+        return displaced;
+    }
+}
@@ -0,0 +1,42 @@
+package org.lupenghan.eazydb.page.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 缓冲池指标的一次快照，延迟单位为微秒，分位数是所在直方图桶的上界
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BufferPoolStats {
+    private int capacity;
+    private int residentPages;
+    private int dirtyPages;
+    private long hits;
+    private long misses;
+    private long cleanEvictions;
+    private long dirtyEvictions;
+    private long pinnedFrameSkips;
+    private long evictionFailures;
+    private long reads;         // 从磁盘读入的页数
+    private long readBytes;
+    private long writes;        // 写回磁盘的页数
+    private long writeBytes;
+    private long readPageCount; // readPage 调用次数
+    private long readPageMeanMicros;
+    private long readPageP50Micros;
+    private long readPageP99Micros;
+    private long writePageCount;
+    private long writePageMeanMicros;
+    private long writePageP50Micros;
+    private long writePageP99Micros;
+
+    public double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
@@ -1,168 +1,479 @@
 package org.lupenghan.eazydb.page.models;
 import org.lupenghan.eazydb.record.models.Record;
 
-import lombok.Builder;
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Supplier;
 
-@Data
+/**
+ * 槽页：页面是一块缓冲区的视图，布局为
+ * [页头 64B][槽位数组，向后增长 ...空闲空间... 记录，从页尾向前增长]
+ * 每个槽位 8 字节：记录偏移(4) + 是否有效(1) + 保留(1) + 保留(2)
+ * 槽位释放后留在记录区中的空洞记录在空闲空间列表中，分配时优先复用，碎片过多时通过 compact 整理；
+ * 无效槽位记录在空闲槽位位图中，插入时直接取第一个空闲槽位，不必扫描整个槽位数组
+ * 页面内容由页帧闩保护，与事务锁无关：闩只在一次物理读写期间持有，不跨越等待锁或 I/O 的操作
+ * （追加日志只写内存，可以在闩内进行；读写其他页面、分配时间戳要在加闩之前完成）。
+ * 唯一的例外是把本页写回磁盘时持有共享闩，保证写出的是一致的页面映像。
+ * 修改页面需持有排他闩；读取优先走乐观路径（不写任何共享状态），校验失败再退回共享闩。
+ * 闩不可重入，并且必须在 unpin 之前释放
+ */
+// 页面对象会作为锁表等 Map 的 key，使用对象标识比较，不能用 @Data 生成基于内容的 equals/hashCode
+@Getter
+@Setter
 public class Page {
-    private static final int PAGE_SIZE = 4096; // 4KB页面大小
-    private static final int PAGE_HEADER_SIZE = 64; // 你 PageHead 占用的总字节数
-    private static final int SLOT_ENTRY_SIZE = 24;  // 每个 SlotDirectoryEntry 占用的大小
-    private int nextFreeOffsetFromEnd = PAGE_SIZE;// 初始从页尾开始分配
-    // B+树索引相关字段
-    private List<Object> keys;      // 键列表
-    private List<Page> children;    // 子页面列表
-    private List<Record> records;   // 记录列表（仅叶子节点使用）
+    // 页面大小在建库时选定并记录在超级块中，之后不能改变；页内布局都按缓冲区容量计算
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final int MIN_PAGE_SIZE = 4096;
+    // 日志中的记录偏移是 16 位有符号数，页面不能超过 32KB
+    public static final int MAX_PAGE_SIZE = 32 * 1024;
+    public static final int PAGE_HEADER_SIZE = PageHead.SIZE;
+    public static final int SLOT_ENTRY_SIZE = 8;  // 每个槽位占用的大小
+    private static final int SLOT_IN_USE = 4;
 
     // 页内主要结构
-    private PageHead header;
-    private List<SlotDirectoryEntry> slotDirectory;
-    private byte[] freeSpace; // 用于表示空闲区域，也可抽象为 FreeSpaceManager
+    private final ByteBuffer buffer;
+    private final PageHead header;
 
     // 页面状态
-    private boolean isDirty;
-    private int pinCount;
-    private long lastAccessTime;
+    private volatile boolean isDirty;
+    // 固定计数，EVICTED 表示该页面已被缓冲池淘汰，不能再被固定
+    private final AtomicInteger pinCount = new AtomicInteger();
+    // CLOCK 置换使用的访问位
+    private volatile boolean referenced;
+    private static final int EVICTED = Integer.MIN_VALUE;
+    // 页帧闩：缓冲池中的页面共用所在页帧的闩，页帧换入新页面时版本号随之变化
+    @Getter(AccessLevel.NONE)
+    private final StampedLock latch;
+
+    // 记录区中的空洞，按偏移升序且互不相邻；只保存在内存中，为 null 时按槽位重建
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private List<FreeSpaceEntry> freeSpaceList;
+    // 无效槽位的位图，与 freeSpaceList 一样只保存在内存中，为 null 时按槽位数组重建
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private BitSet freeSlots;
 
     public Page(int pageId) {
-        this.header = PageHead.builder()
-                .pageId(pageId)
-                .createTime(System.currentTimeMillis())
-                .lastModifiedTime(System.currentTimeMillis())
-                .pageType(PageType.DATA.getValue())
-                .slotCount(0)
-                .recordCount(0)
-                .isLeaf(true)
-                .keyCount(0)
-                .build();
-
-        this.slotDirectory = new ArrayList<>();
-        this.freeSpace = new byte[0];
-        this.keys = new ArrayList<>();
-        this.children = new ArrayList<>();
-        this.records = new ArrayList<>();
+        this(pageId, ByteBuffer.allocate(DEFAULT_PAGE_SIZE));
+    }
+
+    /**
+     * 检查页面大小：4KB 到 32KB 之间的 2 的幂
+     */
+    public static int checkPageSize(int pageSize) {
+        if (pageSize < MIN_PAGE_SIZE || pageSize > MAX_PAGE_SIZE || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("页面大小必须是 4KB、8KB、16KB 或 32KB: " + pageSize);
+        }
+        return pageSize;
+    }
+
+    /**
+     * 在给定缓冲区上初始化一个空页面
+     */
+    public Page(int pageId, ByteBuffer buffer) {
+        this(pageId, buffer, new StampedLock());
+    }
+
+    /**
+     * 在缓冲池页帧上初始化一个空页面，使用页帧的闩
+     */
+    public Page(int pageId, ByteBuffer buffer, StampedLock latch) {
+        this.buffer = buffer;
+        this.latch = latch;
+        this.header = new PageHead(buffer);
+        if (buffer.hasArray()) {
+            Arrays.fill(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.capacity(), (byte) 0);
+        } else {
+            for (int i = 0; i < buffer.capacity(); i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        long now = System.currentTimeMillis();
+        header.setPageId(pageId);
+        header.setCreateTime(now);
+        header.setLastModifiedTime(now);
+        header.setPageType(PageType.DATA.getValue());
+        header.setLeaf(true);
+        header.setFreeSpacePointer(buffer.capacity());
 
         this.isDirty = false;
-        this.pinCount = 0;
-        this.lastAccessTime = System.currentTimeMillis();
+        this.referenced = true;
+        this.freeSpaceList = new ArrayList<>();
+        this.freeSlots = new BitSet();
+    }
+
+    private Page(ByteBuffer buffer, StampedLock latch) {
+        this.buffer = buffer;
+        this.latch = latch;
+        this.header = new PageHead(buffer);
+        this.isDirty = false;
+        this.referenced = true;
+    }
+
+    /**
+     * 将已从磁盘读入的缓冲区包装为页面，不做任何解析
+     */
+    public static Page wrap(ByteBuffer buffer) {
+        return new Page(buffer, new StampedLock());
+    }
+
+    public static Page wrap(ByteBuffer buffer, StampedLock latch) {
+        return new Page(buffer, latch);
+    }
+
+    public int getPageSize() {
+        return buffer.capacity();
     }
 
     //pin 相关
     public void pin() {
-        pinCount++;
+        pinCount.incrementAndGet();
+    }
+
+    /**
+     * 尝试固定页面，页面已被淘汰时返回 false
+     */
+    public boolean tryPin() {
+        while (true) {
+            int count = pinCount.get();
+            if (count < 0) {
+                return false;
+            }
+            if (pinCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
     }
 
     public void unpin() {
-        if (pinCount > 0) {
-            pinCount--;
+        while (true) {
+            int count = pinCount.get();
+            if (count <= 0 || pinCount.compareAndSet(count, count - 1)) {
+                return;
+            }
+        }
+    }
+
+    public int getPinCount() {
+        return Math.max(pinCount.get(), 0);
+    }
+
+    //闩相关
+    public long latchShared() {
+        return latch.readLock();
+    }
+
+    public void unlatchShared(long stamp) {
+        latch.unlockRead(stamp);
+    }
+
+    public long latchExclusive() {
+        return latch.writeLock();
+    }
+
+    public void unlatchExclusive(long stamp) {
+        latch.unlockWrite(stamp);
+    }
+
+    /**
+     * 乐观读取页面内容：先不加闩直接读，读完校验期间没有写者；被写者打断时在共享闩下重读。
+     * reader 可能看到修改到一半的页面，只能读取和复制，读到的结果要等校验通过才能使用，
+     * 因不一致抛出的运行时异常也会在校验失败后被忽略
+     */
+    public <T> T read(Supplier<T> reader) {
+        long stamp = latch.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = reader.get();
+                if (latch.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (latch.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+        stamp = latch.readLock();
+        try {
+            return reader.get();
+        } finally {
+            latch.unlockRead(stamp);
         }
     }
-    //更新最后访问时间
-    public void updateLastAccessTime() {
-        lastAccessTime = System.currentTimeMillis();
+
+    /**
+     * 没有任何固定时将页面标记为已淘汰，之后 tryPin 都会失败
+     */
+    public boolean tryEvict() {
+        return pinCount.compareAndSet(0, EVICTED);
+    }
+
+    // 淘汰失败（如写回出错）时恢复为可固定状态
+    public void cancelEvict() {
+        pinCount.compareAndSet(EVICTED, 0);
     }
-    public int allocateRecordSpace(int size) {
-        int slotEnd =  PAGE_HEADER_SIZE + (getSlotDirectory().size() * SLOT_ENTRY_SIZE);
-        if (nextFreeOffsetFromEnd - size < slotEnd) {
+
+    public boolean isEvicted() {
+        return pinCount.get() == EVICTED;
+    }
+
+    /**
+     * 分配记录空间：先按首次适配复用空洞，再从页尾向前的连续空闲区分配
+     * @param size 记录大小
+     * @param newSlot 是否还需要为新槽位预留空间
+     * @return 记录起始偏移，空间不足返回 -1（碎片足够时可先 compact 再重试）
+     */
+    public int allocateRecordSpace(int size, boolean newSlot) {
+        int slotEnd = PAGE_HEADER_SIZE + (header.getSlotCount() + (newSlot ? 1 : 0)) * SLOT_ENTRY_SIZE;
+        int freePointer = header.getFreeSpacePointer();
+        if (slotEnd > freePointer) {
+            return -1;
+        }
+        List<FreeSpaceEntry> holes = freeSpaceList();
+        for (int i = 0; i < holes.size(); i++) {
+            FreeSpaceEntry hole = holes.get(i);
+            if (hole.getLength() < size) {
+                continue;
+            }
+            int offset = hole.getOffset();
+            if (hole.getLength() == size) {
+                holes.remove(i);
+            } else {
+                hole.setOffset(offset + size);
+                hole.setLength(hole.getLength() - size);
+            }
+            return offset;
+        }
+        if (freePointer - size < slotEnd) {
             return -1; // 空间不足
         }
-        nextFreeOffsetFromEnd -= size;
-        return nextFreeOffsetFromEnd;
+        freePointer -= size;
+        header.setFreeSpacePointer(freePointer);
+        return freePointer;
     }
 
+    //槽位数组与记录区之间的连续空闲字节数
+    public int getFreeSpace() {
+        return header.getFreeSpacePointer() - PAGE_HEADER_SIZE - header.getSlotCount() * SLOT_ENTRY_SIZE;
+    }
+
+    //记录区中空洞的总字节数，只有 compact 之后才能并入连续空闲区
+    public int getFragmentedSpace() {
+        int total = 0;
+        for (FreeSpaceEntry hole : freeSpaceList()) {
+            total += hole.getLength();
+        }
+        return total;
+    }
+
+    /**
+     * 页内整理：把有效槽位的记录依次滑向页尾，重写槽位偏移，所有空洞合并进连续空闲区。
+     * 槽位号不变，无效槽位的偏移清零。
+     */
+    public void compact() {
+        int slotCount = header.getSlotCount();
+        List<Integer> live = new ArrayList<>(slotCount);
+        for (int slotId = 0; slotId < slotCount; slotId++) {
+            if (isSlotInUse(slotId) && getSlotOffset(slotId) != 0) {
+                live.add(slotId);
+            } else {
+                setSlot(slotId, 0, false);
+            }
+        }
+        // 从偏移最大的记录开始移动，目标位置总不低于原位置，不会覆盖尚未移动的记录
+        live.sort(Comparator.comparingInt(this::getSlotOffset).reversed());
+        byte[] tuple = new byte[buffer.capacity()];
+        int dest = buffer.capacity();
+        for (int slotId : live) {
+            int offset = getSlotOffset(slotId);
+            int length = Record.lengthAt(buffer, offset);
+            dest -= length;
+            if (dest != offset) {
+                buffer.get(offset, tuple, 0, length);
+                buffer.put(dest, tuple, 0, length);
+                buffer.putInt(slotPosition(slotId), dest);
+            }
+        }
+        header.setFreeSpacePointer(dest);
+        freeSpaceList = new ArrayList<>();
+        isDirty = true;
+    }
+
+    /**
+     * 清空槽位和记录区，页号和页面类型不变，用于整页复用
+     */
+    public void reset() {
+        header.setSlotCount(0);
+        header.setRecordCount(0);
+        header.setFreeSpacePointer(buffer.capacity());
+        freeSpaceList = new ArrayList<>();
+        freeSlots = new BitSet();
+        isDirty = true;
+    }
+
+    public int getSlotCount() {
+        return header.getSlotCount();
+    }
+
+    /**
+     * 第一个可以复用的无效槽位，没有时返回 -1
+     */
+    public int findFreeSlot() {
+        return freeSlots().nextSetBit(0);
+    }
 
     /**
-     * 添加槽位目录项
+     * 在槽位数组末尾追加一个槽位，调用前需通过 allocateRecordSpace 预留空间
      */
-    public void addSlotDirectoryEntry(SlotDirectoryEntry entry) {
-        slotDirectory.add(entry);
-        header.setSlotCount(header.getSlotCount() + 1);
+    public int addSlot() {
+        int slotId = header.getSlotCount();
+        header.setSlotCount(slotId + 1);
+        setSlot(slotId, 0, false);
         isDirty = true;
+        return slotId;
     }
 
+    public int getSlotOffset(int slotId) {
+        return buffer.getInt(slotPosition(slotId));
+    }
 
-    // B+树索引相关方法
-//    public void addKey(Object key) {
-//        keys.add(key);
-//        header.setKeyCount(header.getKeyCount() + 1);
-//        isDirty = true;
-//    }
-//
-//    public void addKey(int index, Object key) {
-//        keys.add(index, key);
-//        header.setKeyCount(header.getKeyCount() + 1);
-//        isDirty = true;
-//    }
-//
-//    public void addChild(Page child) {
-//        children.add(child);
-//        isDirty = true;
-//    }
-//
-//    public void addChild(int index, Page child) {
-//        children.add(index, child);
-//        isDirty = true;
-//    }
-//
-//    public void addRecord(Record record) {
-//        records.add(record);
-//        header.setRecordCount(header.getRecordCount() + 1);
-//        isDirty = true;
-//    }
-//
-//    public void addRecord(int index, Record record) {
-//        records.add(index, record);
-//        header.setRecordCount(header.getRecordCount() + 1);
-//        isDirty = true;
-//    }
-//
-//    public Object getKey(int index) {
-//        return keys.get(index);
-//    }
-//
-//    public Page getChild(int index) {
-//        return children.get(index);
-//    }
-//
-//    public Record getRecord(int index) {
-//        return records.get(index);
-//    }
-//
-//    public void setKey(int index, Object key) {
-//        keys.set(index, key);
-//        isDirty = true;
-//    }
-//
-//    public void setChild(int index, Page child) {
-//        children.set(index, child);
-//        isDirty = true;
-//    }
-//
-//    public void setRecord(int index, Record record) {
-//        records.set(index, record);
-//        isDirty = true;
-//    }
-//
-//    public void removeKey(int index) {
-//        keys.remove(index);
-//        header.setKeyCount(header.getKeyCount() - 1);
-//        isDirty = true;
-//    }
-//
-//    public void removeChild(int index) {
-//        children.remove(index);
-//        isDirty = true;
-//    }
-//
-//    public void removeRecord(int index) {
-//        records.remove(index);
-//        header.setRecordCount(header.getRecordCount() - 1);
-//        isDirty = true;
-//    }
+    public boolean isSlotInUse(int slotId) {
+        return buffer.get(slotPosition(slotId) + SLOT_IN_USE) == 1;
+    }
 
+    public void setSlot(int slotId, int offset, boolean inUse) {
+        int pos = slotPosition(slotId);
+        buffer.putInt(pos, offset);
+        buffer.put(pos + SLOT_IN_USE, (byte) (inUse ? 1 : 0));
+        if (freeSlots != null) {
+            freeSlots.set(slotId, !inUse);
+        }
+    }
 
+    /**
+     * 修改槽位的有效标记；槽位失效时其记录空间进入空闲空间列表，可被之后的插入复用
+     */
+    public void setSlotInUse(int slotId, boolean inUse) {
+        if (isSlotInUse(slotId) == inUse) {
+            return;
+        }
+        buffer.put(slotPosition(slotId) + SLOT_IN_USE, (byte) (inUse ? 1 : 0));
+        if (freeSlots != null) {
+            freeSlots.set(slotId, !inUse);
+        }
+        int offset = getSlotOffset(slotId);
+        if (offset == 0 || freeSpaceList == null) {
+            return;
+        }
+        if (inUse) {
+            // 重新启用旧记录（回滚删除）时空洞已不准确，下次分配前重建
+            freeSpaceList = null;
+        } else {
+            releaseRecordSpace(offset, Record.lengthAt(buffer, offset));
+        }
+    }
+
+    /**
+     * 获取槽位上的记录游标，槽位不存在或从未分配过记录时返回 null
+     */
+    public Record getRecord(int slotId) {
+        if (slotId < 0 || slotId >= header.getSlotCount() || getSlotOffset(slotId) == 0) {
+            return null;
+        }
+        return new Record(this, slotId);
+    }
+
+    private BitSet freeSlots() {
+        if (freeSlots == null) {
+            int slotCount = header.getSlotCount();
+            freeSlots = new BitSet(slotCount);
+            for (int slotId = 0; slotId < slotCount; slotId++) {
+                if (!isSlotInUse(slotId)) {
+                    freeSlots.set(slotId);
+                }
+            }
+        }
+        return freeSlots;
+    }
+
+    private List<FreeSpaceEntry> freeSpaceList() {
+        if (freeSpaceList == null) {
+            freeSpaceList = rebuildFreeSpaceList();
+        }
+        return freeSpaceList;
+    }
+
+    /**
+     * 根据有效槽位计算记录区 [freeSpacePointer, 页尾) 中未被占用的区间
+     */
+    private List<FreeSpaceEntry> rebuildFreeSpaceList() {
+        List<FreeSpaceEntry> used = new ArrayList<>();
+        for (int slotId = 0; slotId < header.getSlotCount(); slotId++) {
+            int offset = getSlotOffset(slotId);
+            if (offset != 0 && isSlotInUse(slotId)) {
+                used.add(new FreeSpaceEntry(offset, Record.lengthAt(buffer, offset)));
+            }
+        }
+        used.sort(Comparator.comparingInt(FreeSpaceEntry::getOffset));
+        List<FreeSpaceEntry> holes = new ArrayList<>();
+        int pos = header.getFreeSpacePointer();
+        for (FreeSpaceEntry entry : used) {
+            if (entry.getOffset() > pos) {
+                holes.add(new FreeSpaceEntry(pos, entry.getOffset() - pos));
+            }
+            pos = Math.max(pos, entry.getOffset() + entry.getLength());
+        }
+        if (pos < buffer.capacity()) {
+            holes.add(new FreeSpaceEntry(pos, buffer.capacity() - pos));
+        }
+        // 紧挨连续空闲区的空洞直接并入
+        if (!holes.isEmpty() && holes.get(0).getOffset() == header.getFreeSpacePointer()) {
+            FreeSpaceEntry first = holes.remove(0);
+            header.setFreeSpacePointer(first.getOffset() + first.getLength());
+        }
+        return holes;
+    }
+
+    // 把释放的空间插入空闲列表并与相邻空洞合并，紧挨连续空闲区时直接归还
+    private void releaseRecordSpace(int offset, int length) {
+        List<FreeSpaceEntry> holes = freeSpaceList;
+        int i = 0;
+        while (i < holes.size() && holes.get(i).getOffset() < offset) {
+            i++;
+        }
+        FreeSpaceEntry hole = new FreeSpaceEntry(offset, length);
+        if (i < holes.size() && holes.get(i).getOffset() == offset + length) {
+            hole.setLength(length + holes.remove(i).getLength());
+        }
+        if (i > 0) {
+            FreeSpaceEntry prev = holes.get(i - 1);
+            if (prev.getOffset() + prev.getLength() == offset) {
+                prev.setLength(prev.getLength() + hole.getLength());
+                hole = prev;
+                i--;
+                holes.remove(i);
+            }
+        }
+        if (hole.getOffset() == header.getFreeSpacePointer()) {
+            header.setFreeSpacePointer(hole.getOffset() + hole.getLength());
+        } else {
+            holes.add(i, hole);
+        }
+    }
+
+    private static int slotPosition(int slotId) {
+        return PAGE_HEADER_SIZE + slotId * SLOT_ENTRY_SIZE;
+    }
 }
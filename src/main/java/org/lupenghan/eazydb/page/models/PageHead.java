@@ -1,25 +1,71 @@
 package org.lupenghan.eazydb.page.models;
 
-import lombok.Builder;
-import lombok.Data;
+import java.nio.ByteBuffer;
 
-@Data
-@Builder
+/**
+ * 页头，直接读写页面缓冲区的前 64 字节，不额外保存字段
+ */
 public class PageHead {
-    int pageId;                  // 4页唯一编号
-    long fileOffset;            // 8在文件中的偏移（物理地址）
-    long pageLSN;               // 8日志序列号，用于恢复
-    byte pageType;              // 1页类型：数据页/目录页/undo页
-    short freeSpacePointer;       // 2 空闲空间指针
-    int slotCount;              // 4 当前 slot 数量
-    int recordCount;           // 4 有效记录数量
-    int checksum;               // 4 页校验和
-    long version;               // 8 页面版本号（用于MVCC）
-    long createTime;            // 8 页面创建时间
-    long lastModifiedTime;      //8  最后修改时间
+    public static final int SIZE = 64;
+
+    private static final int PAGE_ID = 0;              // 4页唯一编号
+    private static final int FILE_OFFSET = 4;          // 8在文件中的偏移（物理地址）
+    private static final int PAGE_LSN = 12;            // 8日志序列号，用于恢复
+    private static final int PAGE_TYPE = 20;           // 1页类型：数据页/目录页/undo页
+    private static final int FREE_SPACE_POINTER = 21;  // 2 空闲空间指针（最低的记录起始位置）
+    private static final int SLOT_COUNT = 23;          // 4 当前 slot 数量
+    private static final int RECORD_COUNT = 27;        // 4 有效记录数量
+    private static final int CHECKSUM = 31;            // 4 页校验和
+    private static final int VERSION = 35;             // 8 页面版本号（用于MVCC）
+    private static final int CREATE_TIME = 43;         // 8 页面创建时间
+    private static final int LAST_MODIFIED_TIME = 51;  //8  最后修改时间
     // B+树索引相关字段
-    boolean isLeaf;             // 1 是否为叶子节点
-    int keyCount;              // 4 键的数量
+    private static final int IS_LEAF = 59;             // 1 是否为叶子节点
+    private static final int KEY_COUNT = 60;           // 4 键的数量
+
+    private final ByteBuffer buffer;
+
+    public PageHead(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int getPageId() { return buffer.getInt(PAGE_ID); }
+    public void setPageId(int pageId) { buffer.putInt(PAGE_ID, pageId); }
+
+    public long getFileOffset() { return buffer.getLong(FILE_OFFSET); }
+    public void setFileOffset(long fileOffset) { buffer.putLong(FILE_OFFSET, fileOffset); }
+
+    public long getPageLSN() { return buffer.getLong(PAGE_LSN); }
+    public void setPageLSN(long pageLSN) { buffer.putLong(PAGE_LSN, pageLSN); }
+
+    public byte getPageType() { return buffer.get(PAGE_TYPE); }
+    public void setPageType(byte pageType) { buffer.put(PAGE_TYPE, pageType); }
+
+    // 16 位字段按无符号数存储，最大能表示 65535；页面大小受 Page.MAX_PAGE_SIZE 限制不超过 32KB
+    public int getFreeSpacePointer() { return Short.toUnsignedInt(buffer.getShort(FREE_SPACE_POINTER)); }
+    public void setFreeSpacePointer(int pointer) { buffer.putShort(FREE_SPACE_POINTER, (short) pointer); }
+
+    public int getSlotCount() { return buffer.getInt(SLOT_COUNT); }
+    public void setSlotCount(int slotCount) { buffer.putInt(SLOT_COUNT, slotCount); }
+
+    public int getRecordCount() { return buffer.getInt(RECORD_COUNT); }
+    public void setRecordCount(int recordCount) { buffer.putInt(RECORD_COUNT, recordCount); }
+
+    public int getChecksum() { return buffer.getInt(CHECKSUM); }
+    public void setChecksum(int checksum) { buffer.putInt(CHECKSUM, checksum); }
+
+    public long getVersion() { return buffer.getLong(VERSION); }
+    public void setVersion(long version) { buffer.putLong(VERSION, version); }
+
+    public long getCreateTime() { return buffer.getLong(CREATE_TIME); }
+    public void setCreateTime(long createTime) { buffer.putLong(CREATE_TIME, createTime); }
+
+    public long getLastModifiedTime() { return buffer.getLong(LAST_MODIFIED_TIME); }
+    public void setLastModifiedTime(long lastModifiedTime) { buffer.putLong(LAST_MODIFIED_TIME, lastModifiedTime); }
 
+    public boolean isLeaf() { return buffer.get(IS_LEAF) == 1; }
+    public void setLeaf(boolean leaf) { buffer.put(IS_LEAF, (byte) (leaf ? 1 : 0)); }
 
+    public int getKeyCount() { return buffer.getInt(KEY_COUNT); }
+    public void setKeyCount(int keyCount) { buffer.putInt(KEY_COUNT, keyCount); }
 }
@@ -0,0 +1,19 @@
+package org.lupenghan.eazydb.page.models;
+
+/**
+ * 数据文件的访问方式
+ */
+public enum PageIOMode {
+    BUFFERED,   // FileChannel 按页读写
+    MMAP,       // 按段映射文件，读页面不走系统调用
+    DIRECT;     // O_DIRECT 读写，绕过操作系统页缓存，页面只缓存在缓冲池中
+
+    public static PageIOMode fromName(String name) {
+        for (PageIOMode mode : values()) {
+            if (mode.name().equalsIgnoreCase(name)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("未知的 IO 模式: " + name);
+    }
+}
@@ -0,0 +1,27 @@
+package org.lupenghan.eazydb.page.models;
+
+/**
+ * 全局页号的编码：高位是段号，低 20 位是段内页号。
+ * 段 0 是旧版所有表共用的 page.page，其页号与编码前完全相同。
+ */
+public final class PageId {
+    public static final int SEGMENT_SHIFT = 20;
+    public static final int MAX_PAGE_NO = (1 << SEGMENT_SHIFT) - 1;
+    public static final int MAX_SEGMENT_ID = (1 << (31 - SEGMENT_SHIFT)) - 1;
+    public static final int LEGACY_SEGMENT = 0;
+
+    private PageId() {
+    }
+
+    public static int of(int segmentId, int pageNo) {
+        return (segmentId << SEGMENT_SHIFT) | pageNo;
+    }
+
+    public static int segment(int pageId) {
+        return pageId >>> SEGMENT_SHIFT;
+    }
+
+    public static int pageNo(int pageId) {
+        return pageId & MAX_PAGE_NO;
+    }
+}
@@ -0,0 +1,47 @@
+package org.lupenghan.eazydb.page.models;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 段头，段文件第 0 页的视图，记录段的页面分配状态
+ */
+public class SegmentHeader {
+    public static final int MAGIC = 0x5345474D; // "SEGM"
+
+    private static final int MAGIC_OFFSET = 0;         // 4 魔数
+    private static final int SEGMENT_ID = 4;           // 4 段号
+    private static final int LAST_PAGE_NO = 8;         // 4 已分配的最大页号
+    private static final int EXTENT_COUNT = 12;        // 4 已预分配的区数
+    private static final int EXTENT_PAGES = 16;        // 4 每个区的页数
+    private static final int FLAGS = 20;               // 4 段属性
+    // 数据页压缩存放，页面位置见同名的 .pmap 文件
+    public static final int FLAG_COMPRESSED = 1;
+
+    protected final ByteBuffer buffer;
+
+    public SegmentHeader(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public ByteBuffer getBuffer() { return buffer; }
+
+    public int getMagic() { return buffer.getInt(MAGIC_OFFSET); }
+    public void setMagic(int magic) { buffer.putInt(MAGIC_OFFSET, magic); }
+
+    public int getSegmentId() { return buffer.getInt(SEGMENT_ID); }
+    public void setSegmentId(int segmentId) { buffer.putInt(SEGMENT_ID, segmentId); }
+
+    public int getLastPageNo() { return buffer.getInt(LAST_PAGE_NO); }
+    public void setLastPageNo(int lastPageNo) { buffer.putInt(LAST_PAGE_NO, lastPageNo); }
+
+    public int getExtentCount() { return buffer.getInt(EXTENT_COUNT); }
+    public void setExtentCount(int extentCount) { buffer.putInt(EXTENT_COUNT, extentCount); }
+
+    public int getExtentPages() { return buffer.getInt(EXTENT_PAGES); }
+    public void setExtentPages(int extentPages) { buffer.putInt(EXTENT_PAGES, extentPages); }
+
+    public int getFlags() { return buffer.getInt(FLAGS); }
+    public void setFlags(int flags) { buffer.putInt(FLAGS, flags); }
+
+    public boolean isCompressed() { return (getFlags() & FLAG_COMPRESSED) != 0; }
+}
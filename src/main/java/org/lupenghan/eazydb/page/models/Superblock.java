@@ -0,0 +1,39 @@
+package org.lupenghan.eazydb.page.models;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 超级块：段 0（page.page）第 0 页，前半部分与段头相同，记录段 0 自身的分配状态，
+ * 之后是整个数据库的全局信息。启动时只需读这一页即可恢复分配状态。
+ */
+public class Superblock extends SegmentHeader {
+    public static final int MAGIC = 0x455A4442; // "EZDB"
+    public static final int FORMAT_VERSION = 1;
+
+    private static final int FORMAT_VERSION_OFFSET = 32;  // 4 磁盘格式版本
+    private static final int PAGE_SIZE = 36;              // 4 页面大小
+    private static final int CHECKPOINT_LSN = 40;         // 8 最近一次检查点的 LSN，恢复从这里开始
+    private static final int NEXT_SEGMENT_ID = 48;        // 4 下一个可分配的段号
+    private static final int UNDO_SEGMENT_ID = 52;        // 4 UNDO 段号，启动时清空内容、沿用段号，0 表示还没有建过
+    // 固定字段占用的字节数，与页面大小无关，不知道页面大小时读这么多就够了
+    public static final int SIZE = 56;
+
+    public Superblock(ByteBuffer buffer) {
+        super(buffer);
+    }
+
+    public int getFormatVersion() { return buffer.getInt(FORMAT_VERSION_OFFSET); }
+    public void setFormatVersion(int version) { buffer.putInt(FORMAT_VERSION_OFFSET, version); }
+
+    public int getPageSize() { return buffer.getInt(PAGE_SIZE); }
+    public void setPageSize(int pageSize) { buffer.putInt(PAGE_SIZE, pageSize); }
+
+    public long getCheckpointLSN() { return buffer.getLong(CHECKPOINT_LSN); }
+    public void setCheckpointLSN(long lsn) { buffer.putLong(CHECKPOINT_LSN, lsn); }
+
+    public int getNextSegmentId() { return buffer.getInt(NEXT_SEGMENT_ID); }
+    public void setNextSegmentId(int nextSegmentId) { buffer.putInt(NEXT_SEGMENT_ID, nextSegmentId); }
+
+    public int getUndoSegmentId() { return buffer.getInt(UNDO_SEGMENT_ID); }
+    public void setUndoSegmentId(int undoSegmentId) { buffer.putInt(UNDO_SEGMENT_ID, undoSegmentId); }
+}
@@ -6,13 +6,19 @@ import org.lupenghan.eazydb.log.interfaces.LogManager;
 import org.lupenghan.eazydb.log.models.LogRecord;
 import org.lupenghan.eazydb.page.interfaces.PageManager;
 import org.lupenghan.eazydb.page.models.Page;
-import org.lupenghan.eazydb.page.models.SlotDirectoryEntry;
 import org.lupenghan.eazydb.record.interfaces.RecordManager;
 import org.lupenghan.eazydb.record.models.Record;
+import org.lupenghan.eazydb.record.models.UndoVersion;
+import org.lupenghan.eazydb.record.models.VisibleRows;
 import org.lupenghan.eazydb.transaction.interfaces.TransactionManager;
+import org.lupenghan.eazydb.transaction.models.Snapshot;
+import org.lupenghan.eazydb.transaction.models.TransactionStatus;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static org.lupenghan.eazydb.record.models.RecordStatus.*;
@@ -25,248 +31,670 @@ public class RecordManagerImpl implements RecordManager {
     private final PageManager pageManager;
     private final LogManager logManager;
     private final TransactionManager transactionManager;
+    private final UndoStore undoStore;
     public RecordManagerImpl(PageManager pageManager, LogManager logManager, TransactionManager transactionManager) {
         this.pageManager = pageManager;
         this.logManager = logManager;
         this.transactionManager = transactionManager;
+        this.undoStore = new UndoStore(pageManager);
     }
     @Override
     public Record insert(Page page, byte[] data, long xid) throws IOException {
-        transactionManager.acquireLock(xid, page, LockType.EXCLUSIVE_LOCK);
-
-        // 简化：假设单字段，无 NULL
-        byte[] nullBitmap = new byte[1];
-        short[] fieldOffsets = new short[] {0};
-        //不简化
-         // N 个字段需要 (N + 7) / 8 个字节的 nullBitmap
-//        byte[] nullBitmap = new byte[(fieldCount + 7) / 8];
-//
-//        // 设置第 i 个字段为 NULL（如果有）
-//        if (isFieldNull(i)) {
-//            nullBitmap[i / 8] |= (1 << (i % 8));
-//        }
-//        short[] fieldOffsets = new short[fieldCount];
-//        int offsetInData = 0;
-//
-//        for (int i = 0; i < fieldCount; i++) {
-//            fieldOffsets[i] = (short) offsetInData;
-//            if (!isFieldNull(i)) {
-//                offsetInData += getFieldLength(i);  // 字段的实际长度
-//            }
-//        }
-
-        int baseMetadataSize = 4 + 1 + 8 + 8 + 8 + 8 + 4 + 4; // length + status + xid + beginTS + endTS + ptr + pageId + slotId
-        int nullBitmapSize = nullBitmap.length;
-        int fieldOffsetSize = fieldOffsets.length * 2;
-        int totalRecordSize = baseMetadataSize + nullBitmapSize + fieldOffsetSize + data.length;
-
-        int offset = page.allocateRecordSpace(totalRecordSize);
-        if (offset == -1) return null;
-
-        // 1. 先分配slotId
-        int slotId = findReusableSlot(page);
-        if (slotId == -1) {
-            slotId = page.getSlotDirectory().size();
-            page.getSlotDirectory().add(null); // 占位
-            page.getHeader().setSlotCount(page.getHeader().getSlotCount() + 1);
-        }
-
-        Record record = new Record();
-        record.setLength( totalRecordSize);
-        record.setStatus(ACTIVE);
-        record.setXid(xid);
-        record.setBeginTS(System.currentTimeMillis());
-        record.setEndTS(Long.MAX_VALUE);
-        record.setPrevVersionPointer(-1);
-        record.setData(data);
-        record.setNullBitmap(nullBitmap);
-        record.setFieldOffsets(fieldOffsets);
+        lockPage(page, xid);
+        // 分配时间戳可能要把上限落盘，在加闩之前进行
+        long beginTS = transactionManager.getTimestampOracle().next();
+        // 拿到事务锁之后才加页面排他闩，持有闩期间不会再等待事务锁
+        long stamp = page.latchExclusive();
+        try {
+            int totalRecordSize = Record.HEADER_SIZE + data.length;
+
+            // 1. 先分配slotId
+            int slotId = page.findFreeSlot();
+            int offset = allocateRecordSpace(page, totalRecordSize, slotId == -1);
+            if (offset == -1) return null;
+            if (slotId == -1) {
+                slotId = page.addSlot();
+            }
 
-        LogRecord undoLog = LogRecord.createUndoLog(
-                xid,
-                LogRecord.UNDO_INSERT,
-                (short) offset,
-                record.getData(),
-                page.getHeader().getPageId()
-        );
-        logManager.appendLog(undoLog);
+            LogRecord undoLog = LogRecord.createUndoLog(
+                    xid,
+                    LogRecord.UNDO_INSERT,
+                    (short) slotId,
+                    data,
+                    page.getHeader().getPageId()
+            );
+            logManager.appendLog(undoLog);
 
+            Record record = Record.create(page, slotId, offset, data);
+            record.setXid(xid);
+            record.setBeginTS(beginTS);
 
-        record.setPageId(page.getHeader().getPageId());
-        record.setSlotId(slotId);
+            page.getHeader().setRecordCount(page.getHeader().getRecordCount() + 1);
+            page.setDirty(true);
 
-        SlotDirectoryEntry slot = SlotDirectoryEntry.builder()
-                .offset(offset)
-                .inUse(true)
-                .build();
+            LogRecord logRecorde = LogRecord.createRedoLog(xid,page.getHeader().getPageId(), (short) offset,data);
+            // 插入日志和事务
+            logManager.appendLog(logRecorde);
+            page.getHeader().setPageLSN(logRecorde.getLsn());
 
-        page.getRecords().add(record);
-        page.getSlotDirectory().set(slotId, slot);
-        page.getHeader().setRecordCount(page.getHeader().getRecordCount() + 1);
-        page.setDirty(true);
+            transactionManager.addModifiedPage(xid, page);
 
-        LogRecord logRecorde = LogRecord.createRedoLog(xid,page.getHeader().getPageId(), (short) offset,data);
-        // 插入日志和事务
-        logManager.appendLog(logRecorde);
+            return record;
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
 
-        transactionManager.getModifiedPages(xid).add(page);
+    /**
+     * 在同一页面中依次插入多行，直到页面放不下为止：页面锁只取一次，所有行合成一条批量插入日志
+     * @return 已插入的记录，依次对应 rows 的前若干行；一行也放不下时为空
+     */
+    @Override
+    public List<Record> insertBatch(Page page, List<byte[]> rows, long xid) throws IOException {
+        lockPage(page, xid);
+        // 同一批的行共用一个版本时间戳，在加闩之前分配
+        long beginTS = transactionManager.getTimestampOracle().next();
+        long stamp = page.latchExclusive();
+        try {
+            List<Record> records = new ArrayList<>();
+            for (byte[] data : rows) {
+                int slotId = page.findFreeSlot();
+                int offset = allocateRecordSpace(page, Record.HEADER_SIZE + data.length, slotId == -1);
+                if (offset == -1) break;
+                if (slotId == -1) {
+                    slotId = page.addSlot();
+                }
+                Record record = Record.create(page, slotId, offset, data);
+                record.setXid(xid);
+                record.setBeginTS(beginTS);
+                records.add(record);
+            }
+            if (records.isEmpty()) {
+                return records;
+            }
 
-        return record;
+            short[] slots = new short[records.size()];
+            byte[][] data = new byte[records.size()][];
+            for (int i = 0; i < records.size(); i++) {
+                slots[i] = (short) records.get(i).getSlotId();
+                data[i] = rows.get(i);
+            }
+            // 槽位要等行写入后才确定，日志只能在写页面之后追加；追加失败时没有日志可以撤销这些行，
+            // 先把它们从页面上撤回再抛出
+            LogRecord batchLog = LogRecord.createInsertBatchLog(xid, page.getHeader().getPageId(), slots, data);
+            try {
+                logManager.appendLog(batchLog);
+            } catch (IOException | RuntimeException e) {
+                for (Record record : records) {
+                    page.setSlotInUse(record.getSlotId(), false);
+                }
+                throw e;
+            }
+            page.getHeader().setRecordCount(page.getHeader().getRecordCount() + records.size());
+            page.setDirty(true);
+            page.getHeader().setPageLSN(batchLog.getLsn());
+
+            transactionManager.addModifiedPage(xid, page);
+            return records;
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
     }
 
+    /**
+     * 用新版本替换槽位上的最新版本：旧版本复制到 UNDO 段，新版本写在同一槽位，prevVersionPointer 指向旧版本。
+     * 旧版本的创建事务早于清理界限时，所有快照都能看到它，不会再越过它往前找，UNDO 段中只保存它与新版本的差异
+     * @return 新版本；旧版本的空间加上页面空闲空间也放不下新版本时返回 null，记录保持不变
+     */
     @Override
     public Record update(Page page, Record record, byte[] newData, long xid) throws IOException {
-        transactionManager.acquireLock(xid, page, LockType.EXCLUSIVE_LOCK);
+        lockPage(page, xid);
+        // 分配时间戳和写 UNDO 页都可能做 I/O，不能在持有页面闩时进行：先在闩内检查并复制旧版本，
+        // 放开闩写入 UNDO 段，再加闩换上新版本。本事务持有页面的排他锁，其间别的事务不会修改这条记录，
+        // 清理线程只会释放其他槽位或整理页面，不影响已经确认过的空间
+        long beginTS = transactionManager.getTimestampOracle().next();
+        long horizon = transactionManager.getOldestSnapshotXmin();
+        int slotId = record.getSlotId();
+        UndoVersion oldVersion;
+        long ownPrevVersion;
+        long stamp = page.latchExclusive();
+        try {
+            checkLatestVersion(record.moveTo(slotId), xid);
+            if (!fitsInPlace(page, record, newData)) return null;
+            if (record.getXid() == xid) {
+                ownPrevVersion = record.getPrevVersionPointer();
+                if (ownPrevVersion == Record.NO_PREV_VERSION) {
+                    return updateOwnVersion(page, record, newData, xid);
+                }
+                oldVersion = null;
+            } else if (isObsolete(record.getXid(), horizon)) {
+                ownPrevVersion = Record.NO_PREV_VERSION;
+                oldVersion = new UndoVersion(record.getXid(), record.getBeginTS(), record.getDeleteXid(),
+                        Record.NO_PREV_VERSION, encodeDelta(record.getData(), newData), true);
+            } else {
+                ownPrevVersion = Record.NO_PREV_VERSION;
+                oldVersion = new UndoVersion(record.getXid(), record.getBeginTS(), record.getDeleteXid(),
+                        record.getPrevVersionPointer(), record.getData(), false);
+            }
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+        if (oldVersion == null) {
+            return updateOwnVersion(page, record, newData, xid, ownPrevVersion);
+        }
+        long prevVersion = undoStore.append(oldVersion, xid);
+
+        stamp = page.latchExclusive();
+        try {
+            checkLatestVersion(record.moveTo(slotId), xid);
+            if (record.getXid() != oldVersion.getXid() || record.getBeginTS() != oldVersion.getBeginTS()) {
+                throw new IllegalStateException("记录在复制旧版本期间被修改，页 " + page.getHeader().getPageId() + " 槽位 " + slotId);
+            }
 
-        record.setStatus(UPDATED);
-        record.setEndTS(System.currentTimeMillis());
+            // 回滚沿新版本的 prevVersionPointer 到 UNDO 段取回旧版本，undo 日志不再带旧数据
+            LogRecord undoLog = LogRecord.createUndoLog(
+                    xid,
+                    LogRecord.UNDO_UPDATE,
+                    (short) slotId,
+                    null,
+                    page.getHeader().getPageId()
+            );
+            logManager.appendLog(undoLog);
+
+            Record newRecord = rewrite(page, slotId, newData);
+            newRecord.setXid(xid);
+            newRecord.setBeginTS(beginTS);
+            newRecord.setPrevVersionPointer(prevVersion);
+            page.setDirty(true);
+
+            // Step ⑤ 写入 Redo 日志
+            LogRecord redoLog = LogRecord.createRedoLog(
+                    xid,
+                    page.getHeader().getPageId(),
+                    (short) newRecord.getOffset(),
+                    newData
+            );
+            logManager.appendLog(redoLog);
+            page.getHeader().setPageLSN(redoLog.getLsn());
+
+            transactionManager.addModifiedPage(xid, page);
+            return newRecord;
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
 
+    /**
+     * 本事务已经替换过的版本再次更新：版本链上的上一版本如果只保存了差异，差异是相对本事务当前数据的，
+     * 改写之前先把上一版本完整还原成一个新副本，版本链改指向它。在闩外读写 UNDO 段，回来再确认记录没有变化
+     */
+    private Record updateOwnVersion(Page page, Record record, byte[] newData, long xid, long prevVersion) throws IOException {
+        int slotId = record.getSlotId();
+        byte[] currentData = page.read(() -> record.moveTo(slotId).getData());
+        UndoVersion older = undoStore.read(prevVersion);
+        long fullVersion = prevVersion;
+        if (older != null && older.isDelta()) {
+            fullVersion = undoStore.append(new UndoVersion(older.getXid(), older.getBeginTS(), older.getDeleteXid(),
+                    older.getPrevVersionPointer(), applyDelta(currentData, older.getData()), false), older.getDeleteXid());
+        }
+        long stamp = page.latchExclusive();
+        try {
+            checkLatestVersion(record.moveTo(slotId), xid);
+            if (record.getXid() != xid || record.getPrevVersionPointer() != prevVersion) {
+                throw new IllegalStateException("记录在复制旧版本期间被修改，页 " + page.getHeader().getPageId() + " 槽位 " + slotId);
+            }
+            if (!fitsInPlace(page, record, newData)) return null;
+            record.setPrevVersionPointer(fullVersion);
+            return updateOwnVersion(page, record, newData, xid);
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
+
+    /**
+     * 最新版本是本事务自己写入的：提交前其他快照都看不到它，读者会沿版本链越过它，
+     * 所以不必复制到 UNDO 段，直接在槽位上改写；undo 日志只记前后数据的差异，版本链指针保持不变
+     */
+    private Record updateOwnVersion(Page page, Record record, byte[] newData, long xid) throws IOException {
+        byte[] oldData = record.getData();
         LogRecord undoLog = LogRecord.createUndoLog(
                 xid,
-                LogRecord.UNDO_UPDATE,
-                (short) page.getSlotDirectory().get(record.getSlotId()).getOffset(),
-                record.getData(),
+                LogRecord.UNDO_UPDATE_IN_PLACE,
+                (short) record.getSlotId(),
+                encodeDelta(oldData, newData),
                 page.getHeader().getPageId()
         );
         logManager.appendLog(undoLog);
 
-
-        Record newRecord = new Record();
-        newRecord.setStatus(ACTIVE);
-        newRecord.setXid(xid);
-        newRecord.setBeginTS(System.currentTimeMillis());
-        newRecord.setEndTS(Long.MAX_VALUE);
-        newRecord.setPrevVersionPointer(record.getSlotId());
-        newRecord.setData(newData);
-        newRecord.setNullBitmap(record.getNullBitmap().clone());
-        newRecord.setFieldOffsets(record.getFieldOffsets().clone());
-        int offset = page.allocateRecordSpace(newRecord.getData().length + 64); // 估算大小
-        if (offset == -1) return null;
-
-        int slotId = findReusableSlot(page);
-        if (slotId == -1) {
-            slotId = page.getSlotDirectory().size();
-            page.getSlotDirectory().add(null);
-            page.getHeader().setSlotCount(page.getHeader().getSlotCount() + 1);
-        }
-
-        newRecord.setPageId(page.getHeader().getPageId());
-        newRecord.setSlotId(slotId);
-        page.getRecords().add(newRecord);
-
-        SlotDirectoryEntry newSlot = SlotDirectoryEntry.builder()
-                .offset(offset)
-                .inUse(true)
-                .build();
-        page.getSlotDirectory().set(slotId, newSlot);
-        page.getHeader().setRecordCount(page.getHeader().getRecordCount() + 1);
+        Record newRecord = rewriteOwnVersion(page, record, newData);
         page.setDirty(true);
 
-        // Step ⑤ 写入 Redo 日志
         LogRecord redoLog = LogRecord.createRedoLog(
                 xid,
                 page.getHeader().getPageId(),
-                (short) offset,
+                (short) newRecord.getOffset(),
                 newData
         );
         logManager.appendLog(redoLog);
+        page.getHeader().setPageLSN(redoLog.getLsn());
 
-        transactionManager.getModifiedPages(xid).add(page);
+        transactionManager.addModifiedPage(xid, page);
         return newRecord;
     }
 
     @Override
     public void delete(Page page, Record record, long xid) throws IOException {
-        transactionManager.acquireLock(xid, page, LockType.EXCLUSIVE_LOCK);
+        lockPage(page, xid);
+        long stamp = page.latchExclusive();
+        try {
+            checkLatestVersion(record.moveTo(record.getSlotId()), xid);
+            // 只标记删除，槽位和空间保留给快照早于本事务的读者
+            record.setStatus(DELETED);
+            record.setDeleteXid(xid);
+
+            LogRecord undoLog = LogRecord.createUndoLog(
+                    xid,
+                    LogRecord.UNDO_DELETE,
+                    (short) record.getSlotId(),
+                    record.getData(),
+                    page.getHeader().getPageId()
+            );
+            logManager.appendLog(undoLog);
+
+            page.getHeader().setPageLSN(undoLog.getLsn());
+            page.getHeader().setRecordCount(page.getHeader().getRecordCount() - 1);
+            page.setDirty(true);
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
 
-        record.setStatus(DELETED);
-        record.setEndTS(System.currentTimeMillis());
 
+    /**
+     * 读取记录在快照中可见的版本：最新版本不可见且是快照看不到的事务写入的，才沿版本链到 UNDO 段中找旧版本
+     */
+    @Override
+    public byte[] select(Page page, Record record, Snapshot snapshot) throws IOException {
+        long[] older = new long[1];
+        byte[][] newer = new byte[1][];
+        byte[] data = page.read(() -> {
+            older[0] = Record.NO_PREV_VERSION;
+            // 更新可能让记录在页内换了位置，按槽位重新定位
+            Record latest = record.moveTo(record.getSlotId());
+            if (isVisible(latest, snapshot)) {
+                return latest.getData();
+            }
+            if (needsOlderVersion(latest, snapshot)) {
+                older[0] = latest.getPrevVersionPointer();
+                newer[0] = latest.getData();
+            }
+            return null;
+        });
+        return data != null ? data : findVersion(older[0], newer[0], snapshot);
+    }
+    @Override
+    public void rollbackRecord(Page page, LogRecord log) throws IOException {
+        // 更新回滚要读 UNDO 页，在加排他闩之前读出上一版本；记录仍归本事务所有，版本链指针不会变
+        UndoVersion older = null;
+        if (log.getLogType() == LogRecord.TYPE_UNDO && log.getOperationType() == LogRecord.UNDO_UPDATE) {
+            int slotId = log.getOffset();
+            long pointer = page.read(() -> slotId >= 0 && slotId < page.getSlotCount()
+                    ? new Record(page, slotId).getPrevVersionPointer() : Record.NO_PREV_VERSION);
+            older = pointer == Record.NO_PREV_VERSION ? null : undoStore.read(pointer);
+        }
+        long stamp = page.latchExclusive();
+        try {
+            if (log.getLogType() == LogRecord.TYPE_INSERT_BATCH) {
+                for (short slotId : log.getOffsets()) {
+                    rollbackSlot(page, log, slotId, null);
+                }
+            } else {
+                rollbackSlot(page, log, log.getOffset(), older);
+            }
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
 
-        LogRecord undoLog = LogRecord.createUndoLog(
-                xid,
-                LogRecord.UNDO_DELETE,
-                (short) page.getSlotDirectory().get(record.getSlotId()).getOffset(),
-                record.getData(),
-                page.getHeader().getPageId()
-        );
-        logManager.appendLog(undoLog);
+    private void rollbackSlot(Page page, LogRecord log, int slotId, UndoVersion older) {
+        if (slotId < 0 || slotId >= page.getSlotCount()) {
+            return;
+        }
+        Record record = new Record(page, slotId);
+        switch (log.getOperationType()) {
+            case LogRecord.UNDO_UPDATE -> restoreOlderVersion(page, record, older);
+            case LogRecord.UNDO_UPDATE_IN_PLACE -> {
+                byte[] oldData = applyDelta(record.getData(), log.getUndoData());
+                if (!fitsInPlace(page, record, oldData)) {
+                    throw new IllegalStateException("页面空间不足，无法恢复更新前的数据，页 " + page.getHeader().getPageId() + " 槽位 " + slotId);
+                }
+                rewriteOwnVersion(page, record, oldData);
+            }
+            case LogRecord.UNDO_DELETE -> {
+                record.setStatus(ACTIVE);
+                record.setDeleteXid(Record.NOT_DELETED);
+                page.setSlotInUse(slotId, true);
+            }
+            case LogRecord.UNDO_INSERT -> {
+                record.setStatus(DELETED); // 插入回滚就等价于删除，没有快照能看到已回滚事务的插入，槽位直接释放
+                record.setDeleteXid(log.getXid());
+                page.setSlotInUse(slotId, false);
+            }
+        }
+        page.setDirty(true);
+    }
 
+    /**
+     * 更新回滚：用 UNDO 段中的上一版本替换本事务写入的版本。之后的原地改写已先回滚，
+     * 只保存差异的上一版本从记录当前的数据还原
+     */
+    private void restoreOlderVersion(Page page, Record record, UndoVersion older) {
+        if (older == null) {
+            throw new IllegalStateException("找不到更新前的版本，页 " + page.getHeader().getPageId() + " 槽位 " + record.getSlotId());
+        }
+        byte[] oldData = older.isDelta() ? applyDelta(record.getData(), older.getData()) : older.getData();
+        if (!fitsInPlace(page, record, oldData)) {
+            throw new IllegalStateException("页面空间不足，无法恢复更新前的版本，页 " + page.getHeader().getPageId() + " 槽位 " + record.getSlotId());
+        }
+        Record restored = rewrite(page, record.getSlotId(), oldData);
+        restored.setXid(older.getXid());
+        restored.setBeginTS(older.getBeginTS());
+        restored.setPrevVersionPointer(older.getPrevVersionPointer());
+    }
 
-        record.setXid(xid);
-        SlotDirectoryEntry slot = page.getSlotDirectory().get(record.getSlotId());
-        if (slot != null) slot.setInUse(false);
-        page.getHeader().setRecordCount(page.getHeader().getRecordCount() - 1);
-        page.setDirty(true);
+    // 释放 record 的空间后能否放下 data
+    private boolean fitsInPlace(Page page, Record record, byte[] data) {
+        return data.length <= record.getDataLength()
+                || page.getFreeSpace() + page.getFragmentedSpace() + record.getLength() >= Record.HEADER_SIZE + data.length;
     }
 
+    /**
+     * 在槽位上写入一个新的最新版本：长度不变时原地覆盖，否则释放原记录的空间后重新分配，记录可能换位置。
+     * 返回的记录除数据外头部都是初始值，调用方先用 fitsInPlace 确认空间足够
+     */
+    private Record rewrite(Page page, int slotId, byte[] data) {
+        Record record = new Record(page, slotId);
+        if (record.getDataLength() != data.length) {
+            page.setSlotInUse(slotId, false);
+            int offset = allocateRecordSpace(page, Record.HEADER_SIZE + data.length, false);
+            if (offset == -1) {
+                throw new IllegalStateException("页面空间不足，页 " + page.getHeader().getPageId() + " 槽位 " + slotId);
+            }
+            return Record.create(page, slotId, offset, data);
+        }
+        record.setData(data);
+        record.setStatus(ACTIVE);
+        record.setXid(0);
+        record.setBeginTS(0);
+        record.setDeleteXid(Record.NOT_DELETED);
+        record.setPrevVersionPointer(Record.NO_PREV_VERSION);
+        return record;
+    }
 
-    @Override
-    public byte[] select(Page page, Record record) {
+    // 改写本事务自己的版本：只换数据，创建事务、开始时间戳和版本链指针不变
+    private Record rewriteOwnVersion(Page page, Record record, byte[] data) {
+        if (data.length == record.getDataLength()) {
+            record.setData(data);
+            return record;
+        }
+        long xid = record.getXid();
+        long beginTS = record.getBeginTS();
+        long prevVersion = record.getPrevVersionPointer();
+        Record rewritten = rewrite(page, record.getSlotId(), data);
+        rewritten.setXid(xid);
+        rewritten.setBeginTS(beginTS);
+        rewritten.setPrevVersionPointer(prevVersion);
+        return rewritten;
+    }
 
-        if (!isValidRecord(record)) {
-            return null;
+    /**
+     * 原地更新的 undo 数据：[相同前缀长度 4][相同后缀长度 4][旧数据中间变化的部分]，
+     * 计数器一类只改几个字节的更新，undo 日志也只有几个字节
+     */
+    private static byte[] encodeDelta(byte[] oldData, byte[] newData) {
+        int max = Math.min(oldData.length, newData.length);
+        int prefix = 0;
+        while (prefix < max && oldData[prefix] == newData[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && oldData[oldData.length - 1 - suffix] == newData[newData.length - 1 - suffix]) {
+            suffix++;
         }
-        return record.getData();
+        ByteBuffer delta = ByteBuffer.allocate(8 + oldData.length - prefix - suffix);
+        delta.putInt(prefix);
+        delta.putInt(suffix);
+        delta.put(oldData, prefix, oldData.length - prefix - suffix);
+        return delta.array();
     }
-    @Override
-    public void rollbackRecord(Page page, LogRecord log) {
-        for (Record record : page.getRecords()) {
-            SlotDirectoryEntry slot = page.getSlotDirectory().get(record.getSlotId());
-            if (slot.getOffset() == log.getOffset()) {
-                switch (log.getOperationType()) {
-                    case LogRecord.UNDO_UPDATE -> {
-                        record.setData(log.getUndoData());
-                        record.setStatus(ACTIVE);
-                    }
-                    case LogRecord.UNDO_DELETE -> {
-                        record.setStatus(ACTIVE);
-                        record.setEndTS(Long.MAX_VALUE);
-                    }
-                    case LogRecord.UNDO_INSERT -> {
-                        record.setStatus(DELETED); // 插入回滚就等价于删除
-                        record.setEndTS(System.currentTimeMillis());
-                    }
-                }
-                page.setDirty(true);
-            }
+
+    // 用 encodeDelta 的结果从新数据还原旧数据
+    private static byte[] applyDelta(byte[] newData, byte[] delta) {
+        ByteBuffer buffer = ByteBuffer.wrap(delta);
+        int prefix = buffer.getInt();
+        int suffix = buffer.getInt();
+        int middle = buffer.remaining();
+        byte[] oldData = new byte[prefix + middle + suffix];
+        System.arraycopy(newData, 0, oldData, 0, prefix);
+        buffer.get(oldData, prefix, middle);
+        System.arraycopy(newData, newData.length - suffix, oldData, prefix + middle, suffix);
+        return oldData;
+    }
+
+    /**
+     * 只能修改最新版本：已被删除或替换的版本（删除方未回滚）不能再修改；
+     * 最新版本是另一个尚未结束的事务写入的，覆盖它就是脏写，按写冲突拒绝
+     */
+    private void checkLatestVersion(Record record, long xid) {
+        if (record.getStatus() != ACTIVE || !record.getPage().isSlotInUse(record.getSlotId())) {
+            throw new IllegalStateException("记录已被删除或更新，页 " + record.getPageId() + " 槽位 " + record.getSlotId());
+        }
+        long creator = record.getXid();
+        if (creator != xid && transactionManager.getTransactionsStatus(creator) == TransactionStatus.ACTIVE) {
+            throw new IllegalStateException("写冲突：记录由未提交的事务 " + creator + " 写入，页 "
+                    + record.getPageId() + " 槽位 " + record.getSlotId());
+        }
+    }
+
+    // 修改页面前先取页面排他锁，超时或死锁取不到时不能继续写
+    private void lockPage(Page page, long xid) {
+        if (transactionManager.acquireLock(xid, page, LockType.EXCLUSIVE_LOCK) == null) {
+            throw new IllegalStateException("事务 " + xid + " 无法获取页 " + page.getHeader().getPageId() + " 的排他锁");
         }
     }
 
     @Override
     public List<Record> getAllRecords(Page page) {
         List<Record> validRecords = new ArrayList<>();
-        for (Record record : page.getRecords()) {
+        for (int slotId = 0; slotId < page.getSlotCount(); slotId++) {
+            Record record = page.getRecord(slotId);
             if (isValidRecord(record)) {
                 validRecords.add(record);
             }
         }
         return validRecords;
     }
+
+    /**
+     * 复制页面中对快照可见的所有记录的数据，在乐观读下完成，读到修改到一半的页面时会在共享闩下重读。
+     * 需要旧版本的记录先占位，读完页面、放开闩之后再沿版本链到 UNDO 段中查找，结果仍按槽位顺序排列
+     */
+    @Override
+    public List<byte[]> getAllRecordData(Page page, Snapshot snapshot) {
+        VisibleRows rows = page.read(() -> copyVisibleRows(page, snapshot));
+        try {
+            return resolveVersions(rows, snapshot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public VisibleRows copyVisibleRows(Page page, Snapshot snapshot) {
+        List<byte[]> rows = new ArrayList<>();
+        List<Long> olderVersions = new ArrayList<>();
+        List<byte[]> newerData = new ArrayList<>();
+        for (int slotId = 0; slotId < page.getSlotCount(); slotId++) {
+            Record record = page.getRecord(slotId);
+            if (isVisible(record, snapshot)) {
+                rows.add(record.getData());
+            } else if (record != null && needsOlderVersion(record, snapshot)) {
+                rows.add(null);
+                olderVersions.add(record.getPrevVersionPointer());
+                newerData.add(record.getData());
+            }
+        }
+        return new VisibleRows(rows, olderVersions, newerData);
+    }
+
+    @Override
+    public List<byte[]> resolveVersions(VisibleRows rows, Snapshot snapshot) throws IOException {
+        if (rows.getOlderVersions().isEmpty()) {
+            return rows.getRows();
+        }
+        List<byte[]> result = new ArrayList<>(rows.getRows().size());
+        Iterator<Long> pointers = rows.getOlderVersions().iterator();
+        Iterator<byte[]> newer = rows.getNewerData().iterator();
+        for (byte[] row : rows.getRows()) {
+            if (row == null) {
+                row = findVersion(pointers.next(), newer.next(), snapshot);
+            }
+            if (row != null) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 从版本指针开始沿版本链向前，找到快照能看到的创建事务写入的第一个版本。
+     * newerData 是指针所在版本的数据，只保存差异的版本用它还原
+     */
+    private byte[] findVersion(long pointer, byte[] newerData, Snapshot snapshot) throws IOException {
+        while (pointer != Record.NO_PREV_VERSION) {
+            UndoVersion version = undoStore.read(pointer);
+            if (version == null) {
+                return null;
+            }
+            byte[] data = version.isDelta() ? applyDelta(newerData, version.getData()) : version.getData();
+            if (isCreatorVisible(version.getXid(), snapshot)) {
+                return isVisible(version.getXid(), version.getDeleteXid(), snapshot) ? data : null;
+            }
+            newerData = data;
+            pointer = version.getPrevVersionPointer();
+        }
+        return null;
+    }
     @Override
     public void rollbackTransaction(long xid) throws IOException {
         List<LogRecord> undoLogs = transactionManager.getUndoLogs(xid);
         for (int i = undoLogs.size() - 1; i >= 0; i--) {
             LogRecord log = undoLogs.get(i);
             Page page = pageManager.readPage(log.getPageID());
-            rollbackRecord(page, log);
+            if (page == null) {
+                continue;
+            }
+            try {
+                rollbackRecord(page, log);
+            } finally {
+                pageManager.unpinPage(page);
+            }
+        }
+    }
+
+    /**
+     * 删除事务已提交且早于 horizon 的版本任何快照都看不到，直接释放槽位；
+     * 最新版本的创建事务早于 horizon 时版本链不再需要，清掉指针，指向的 UNDO 页之后可以复用
+     */
+    @Override
+    public int vacuumPage(Page page, long horizon) {
+        long stamp = page.latchExclusive();
+        try {
+            int removed = 0;
+            boolean changed = false;
+            for (int slotId = 0; slotId < page.getSlotCount(); slotId++) {
+                Record record = page.getRecord(slotId);
+                if (record == null || !page.isSlotInUse(slotId)) {
+                    continue;
+                }
+                if (record.getStatus() == DELETED && isObsolete(record.getDeleteXid(), horizon)) {
+                    page.setSlotInUse(slotId, false);
+                    removed++;
+                } else if (record.getPrevVersionPointer() != Record.NO_PREV_VERSION && isObsolete(record.getXid(), horizon)) {
+                    record.setPrevVersionPointer(Record.NO_PREV_VERSION);
+                    changed = true;
+                }
+            }
+            if (removed > 0 && pageManager.needsCompaction(page)) {
+                pageManager.compactPage(page);
+            }
+            if (removed > 0 || changed) {
+                page.setDirty(true);
+            }
+            return removed;
+        } finally {
+            page.unlatchExclusive(stamp);
         }
     }
 
+    @Override
+    public int recycleUndoPages(long horizon) {
+        return undoStore.recycle(horizon);
+    }
+
+    // 事务已提交且早于清理界限
+    private boolean isObsolete(long xid, long horizon) {
+        return xid < horizon && !transactionManager.isAborted(xid);
+    }
+
+    /**
+     * 记录是否为最新版本：未被删除或替换，且创建它的事务没有回滚；不考虑快照，写入前的检查使用
+     */
     @Override
     public boolean isValidRecord(Record record) {
         return record != null &&
                 record.getStatus() == ACTIVE &&
-                System.currentTimeMillis() >= record.getBeginTS() &&
-                System.currentTimeMillis() < record.getEndTS();
-    }
-    // 寻找可复用的槽位
-    private static int findReusableSlot(Page page) {
-        for (int i = 0; i < page.getSlotDirectory().size(); i++) {
-            if (!page.getSlotDirectory().get(i).isInUse()) {
-                return i;
-            }
+                record.getPage().isSlotInUse(record.getSlotId()) &&
+                !transactionManager.isAborted(record.getXid());
+    }
+
+    /**
+     * 版本对快照是否可见：创建它的事务对快照已完成且没有回滚，删除它的事务对快照尚未完成或已回滚
+     */
+    @Override
+    public boolean isVisible(Record record, Snapshot snapshot) {
+        if (record == null || !record.getPage().isSlotInUse(record.getSlotId())) {
+            return false;
+        }
+        return isVisible(record.getXid(), record.getDeleteXid(), snapshot);
+    }
+
+    private boolean isVisible(long creator, long deleter, Snapshot snapshot) {
+        return isCreatorVisible(creator, snapshot)
+                && (deleter == Record.NOT_DELETED || !snapshot.sees(deleter) || transactionManager.isAborted(deleter));
+    }
+
+    private boolean isCreatorVisible(long creator, Snapshot snapshot) {
+        return snapshot.sees(creator) && !transactionManager.isAborted(creator);
+    }
+
+    // 最新版本是快照看不到的事务写入的，需要到版本链上找旧版本
+    private boolean needsOlderVersion(Record record, Snapshot snapshot) {
+        return record.getPage().isSlotInUse(record.getSlotId())
+                && !isCreatorVisible(record.getXid(), snapshot)
+                && record.getPrevVersionPointer() != Record.NO_PREV_VERSION;
+    }
+    /**
+     * 在页面内分配记录空间，空闲总量足够但被碎片分隔时先整理页面再分配
+     */
+    private int allocateRecordSpace(Page page, int size, boolean newSlot) {
+        int offset = page.allocateRecordSpace(size, newSlot);
+        if (offset == -1 && page.getFreeSpace() + page.getFragmentedSpace()
+                >= size + (newSlot ? Page.SLOT_ENTRY_SIZE : 0)) {
+            pageManager.compactPage(page);
+            offset = page.allocateRecordSpace(size, newSlot);
         }
-        return -1;
+        return offset;
     }
 }
@@ -0,0 +1,144 @@
+package org.lupenghan.eazydb.record.Impl;
+
+import org.lupenghan.eazydb.page.interfaces.PageManager;
+import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageType;
+import org.lupenghan.eazydb.record.models.Record;
+import org.lupenghan.eazydb.record.models.RecordStatus;
+import org.lupenghan.eazydb.record.models.UndoVersion;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 旧版本存储：更新时把被替换的版本复制到 UNDO 段的页面中，数据页只保留最新版本。
+ * 被替换版本的创建事务早于清理界限时只保存它与新版本的差异（DELTA），读者沿版本链用较新的版本还原。
+ * UNDO 页只追加、写入后不再修改，版本指针（页号, 槽位）一直有效；
+ * 段内容只在本次运行内使用，第一次写入时打开（没有时新建），下次启动时由页面管理器清空。
+ * 页内所有副本的替换事务都早于清理界限时，没有读者会再沿版本链走到这一页，整页回收后复用。
+ */
+public class UndoStore {
+    private final PageManager pageManager;
+    private int segmentId = -1;
+    // 正在追加的 UNDO 页，写满之前保持固定
+    private Page current;
+    // 每个 UNDO 页中最大的替换事务号
+    private final Map<Integer, Long> newestDeleteXid = new HashMap<>();
+    private final Deque<Integer> freePages = new ArrayDeque<>();
+
+    public UndoStore(PageManager pageManager) {
+        this.pageManager = pageManager;
+    }
+
+    /**
+     * 复制 version 到 UNDO 页，deleteXid 为用新版本替换它的事务；可能分配或读入页面，调用方不能持有任何页面闩
+     * @return 副本的版本指针
+     */
+    public synchronized long append(UndoVersion version, long deleteXid) throws IOException {
+        byte[] data = version.getData();
+        int slotId = current == null ? -1 : tryAppend(current, version, data, deleteXid);
+        if (slotId == -1) {
+            nextPage();
+            slotId = tryAppend(current, version, data, deleteXid);
+            if (slotId == -1) {
+                throw new IllegalStateException("版本过大，UNDO 页放不下: " + (Record.HEADER_SIZE + data.length) + " 字节");
+            }
+        }
+        newestDeleteXid.merge(current.getHeader().getPageId(), deleteXid, Math::max);
+        return Record.versionPointer(current.getHeader().getPageId(), slotId);
+    }
+
+    /**
+     * 回收所有副本的替换事务都早于 horizon 的 UNDO 页，正在追加的页除外
+     * @return 回收的页数
+     */
+    public synchronized int recycle(long horizon) {
+        int currentPageId = current == null ? -1 : current.getHeader().getPageId();
+        int recycled = 0;
+        Iterator<Map.Entry<Integer, Long>> it = newestDeleteXid.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Long> entry = it.next();
+            if (entry.getValue() < horizon && entry.getKey() != currentPageId) {
+                it.remove();
+                freePages.add(entry.getKey());
+                recycled++;
+            }
+        }
+        return recycled;
+    }
+
+    /**
+     * 读取版本指针指向的旧版本，所在页面尚未写入时返回 null。
+     * 上次运行留下的指针指向已清空、会被重新写入的页面，但不会被跟随：它们所在版本的创建事务都已结束，
+     * 对重启后的所有快照都可见，读者不会越过这些版本去找更旧的版本
+     */
+    public UndoVersion read(long pointer) throws IOException {
+        int slotId = Record.pointerSlotId(pointer);
+        return pageManager.readPage(Record.pointerPageId(pointer), null, page -> {
+            if (slotId >= page.getSlotCount()) {
+                return null;
+            }
+            Record version = page.getRecord(slotId);
+            return version == null ? null : new UndoVersion(version.getXid(), version.getBeginTS(),
+                    version.getDeleteXid(), version.getPrevVersionPointer(), version.getData(),
+                    version.getStatus() == RecordStatus.DELTA.getValue());
+        });
+    }
+
+    private int tryAppend(Page page, UndoVersion version, byte[] data, long deleteXid) {
+        long stamp = page.latchExclusive();
+        try {
+            int offset = page.allocateRecordSpace(Record.HEADER_SIZE + data.length, true);
+            if (offset == -1) {
+                return -1;
+            }
+            int slotId = page.addSlot();
+            Record copy = Record.create(page, slotId, offset, data);
+            copy.setStatus(version.isDelta() ? RecordStatus.DELTA.getValue() : RecordStatus.UPDATED.getValue());
+            copy.setXid(version.getXid());
+            copy.setBeginTS(version.getBeginTS());
+            copy.setDeleteXid(deleteXid);
+            copy.setPrevVersionPointer(version.getPrevVersionPointer());
+            page.setDirty(true);
+            return slotId;
+        } finally {
+            page.unlatchExclusive(stamp);
+        }
+    }
+
+    private void nextPage() throws IOException {
+        Page page = reuseFreePage();
+        if (page == null) {
+            if (segmentId == -1) {
+                segmentId = pageManager.openUndoSegment();
+            }
+            page = pageManager.createPage(segmentId);
+            pageManager.setPageType(page, PageType.UNDO.getValue());
+        }
+        if (current != null) {
+            pageManager.unpinPage(current);
+        }
+        current = page;
+    }
+
+    private Page reuseFreePage() throws IOException {
+        Integer pageId;
+        while ((pageId = freePages.poll()) != null) {
+            Page page = pageManager.readPage(pageId);
+            if (page != null) {
+                long stamp = page.latchExclusive();
+                try {
+                    page.reset();
+                } finally {
+                    page.unlatchExclusive(stamp);
+                }
+                return page;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,142 @@
+package org.lupenghan.eazydb.record.Impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lupenghan.eazydb.page.interfaces.PageManager;
+import org.lupenghan.eazydb.page.models.BufferAccessStrategy;
+import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageId;
+import org.lupenghan.eazydb.record.interfaces.RecordManager;
+import org.lupenghan.eazydb.table.interfaces.TableManager;
+import org.lupenghan.eazydb.table.models.Table;
+import org.lupenghan.eazydb.transaction.interfaces.TransactionManager;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 后台清理线程：每轮以所有活跃快照中最小的 xmin 为界限，逐页清除任何快照都看不到的已删除版本，
+ * 释放槽位和空间，空洞多时整理页面，并回收不再需要的 UNDO 页。
+ * 按每秒处理的页数限速，清理大表时不与前台查询争抢 I/O。
+ */
+@Slf4j
+public class VacuumWorker implements Runnable {
+    public static final int DEFAULT_PAGES_PER_SECOND = 1000;
+    public static final long DEFAULT_INTERVAL_MILLIS = 10_000;
+
+    private final TableManager tableManager;
+    private final PageManager pageManager;
+    private final RecordManager recordManager;
+    private final TransactionManager transactionManager;
+    // 每秒最多处理的页数，0 表示不限速
+    private final int pagesPerSecond;
+    private final long intervalMillis;
+    private volatile boolean stopped;
+    private Thread thread;
+    // 限速：下一页最早的开始时间
+    private long nextPageNanos;
+
+    public VacuumWorker(TableManager tableManager, PageManager pageManager, RecordManager recordManager,
+                        TransactionManager transactionManager) {
+        this(tableManager, pageManager, recordManager, transactionManager, DEFAULT_PAGES_PER_SECOND, DEFAULT_INTERVAL_MILLIS);
+    }
+
+    public VacuumWorker(TableManager tableManager, PageManager pageManager, RecordManager recordManager,
+                        TransactionManager transactionManager, int pagesPerSecond, long intervalMillis) {
+        if (pagesPerSecond < 0) {
+            throw new IllegalArgumentException("每秒页数不能为负数: " + pagesPerSecond);
+        }
+        this.tableManager = tableManager;
+        this.pageManager = pageManager;
+        this.recordManager = recordManager;
+        this.transactionManager = transactionManager;
+        this.pagesPerSecond = pagesPerSecond;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void start() {
+        thread = new Thread(this, "vacuum");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // 停止后台线程，正在进行的一轮在处理完当前页后结束
+    public void stop() {
+        stopped = true;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (!stopped) {
+            LockSupport.parkNanos(intervalMillis * 1_000_000);
+            if (stopped) {
+                break;
+            }
+            try {
+                long start = System.nanoTime();
+                long removed = vacuum();
+                if (removed > 0) {
+                    log.info("清理 {} 个过期版本，用时 {} ms", removed, (System.nanoTime() - start) / 1_000_000);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("清理失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 清理一轮：依次处理所有表的数据页，然后回收 UNDO 页
+     * @return 清除的版本数
+     */
+    public long vacuum() throws IOException {
+        long horizon = transactionManager.getOldestSnapshotXmin();
+        long removed = 0;
+        for (String tableName : tableManager.listTables()) {
+            Table table = tableManager.getTable(tableName);
+            if (table == null) {
+                continue;
+            }
+            int segmentId = table.getSegmentId();
+            int pageCount = pageManager.getPageCount(segmentId);
+            // 与大表扫描一样只在环形缓冲内使用页帧，不挤占前台的热点页面
+            BufferAccessStrategy strategy = pageManager.scanStrategy(pageCount);
+            for (int pageNo = 1; pageNo <= pageCount && !stopped; pageNo++) {
+                throttle();
+                Page page = pageManager.readPage(PageId.of(segmentId, pageNo), strategy);
+                if (page == null) {
+                    continue;
+                }
+                try {
+                    int count = recordManager.vacuumPage(page, horizon);
+                    if (count > 0) {
+                        removed += count;
+                        pageManager.updateFreeSpace(tableName, page);
+                    }
+                } finally {
+                    pageManager.unpinPage(page);
+                }
+            }
+        }
+        recordManager.recycleUndoPages(horizon);
+        return removed;
+    }
+
+    private void throttle() {
+        if (pagesPerSecond == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (nextPageNanos > now) {
+            LockSupport.parkNanos(nextPageNanos - now);
+            now = System.nanoTime();
+        }
+        nextPageNanos = Math.max(now, nextPageNanos) + 1_000_000_000L / pagesPerSecond;
+    }
+}
@@ -3,19 +3,35 @@ package org.lupenghan.eazydb.record.interfaces;
 import org.lupenghan.eazydb.log.models.LogRecord;
 import org.lupenghan.eazydb.page.models.Page;
 import org.lupenghan.eazydb.record.models.Record;
+import org.lupenghan.eazydb.record.models.VisibleRows;
+import org.lupenghan.eazydb.transaction.models.Snapshot;
 
 import java.io.IOException;
 import java.util.List;
 
 public interface RecordManager {
     Record insert(Page page, byte[] data, long xid) throws IOException;
+    // 在同一页面中依次插入多行直到放不下，返回已插入的记录（对应 rows 的前若干行）
+    List<Record> insertBatch(Page page, List<byte[]> rows, long xid) throws IOException;
     Record update(Page page, Record record, byte[] newData, long xid) throws IOException;
     void delete(Page page, Record record, long xid) throws IOException;
-    byte[] select(Page page, Record record);
+    // 读取记录在快照中可见的数据，需要时沿版本链读取旧版本，不可见时返回 null；不加事务锁
+    byte[] select(Page page, Record record, Snapshot snapshot) throws IOException;
     List<Record> getAllRecords(Page page);
-    void rollbackRecord(Page page, LogRecord log);
+    // 复制页面中对快照可见的所有记录的数据，不需要调用方持有闩；读取旧版本失败时抛出 UncheckedIOException
+    List<byte[]> getAllRecordData(Page page, Snapshot snapshot);
+    // 只复制页面中对快照可见的记录，不做 I/O，可以作为 readPage 的 reader；需要旧版本的记录只记下版本指针和最新版本的数据
+    VisibleRows copyVisibleRows(Page page, Snapshot snapshot);
+    // 沿版本链补齐 copyVisibleRows 留下的旧版本，会读取 UNDO 页，调用方不能持有页面闩
+    List<byte[]> resolveVersions(VisibleRows rows, Snapshot snapshot) throws IOException;
+    void rollbackRecord(Page page, LogRecord log) throws IOException;
     boolean isValidRecord(Record record);
+    boolean isVisible(Record record, Snapshot snapshot);
     void rollbackTransaction(long xid) throws IOException;
+    // 清除页面中删除事务早于清理界限的版本，释放槽位，空洞多时整理页面；返回清除的版本数
+    int vacuumPage(Page page, long horizon);
+    // 复用所有副本都已不再需要的 UNDO 页，返回回收的页数
+    int recycleUndoPages(long horizon);
 
 
 }
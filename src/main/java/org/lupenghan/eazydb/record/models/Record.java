@@ -1,33 +1,145 @@
 package org.lupenghan.eazydb.record.models;
 
-import lombok.Data;
+import org.lupenghan.eazydb.page.models.Page;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Objects;
 
-@Data
+/**
+ * 记录游标：不持有数据，所有字段都直接读写所在页面的缓冲区。
+ * 扫描时可以通过 moveTo 复用同一个游标，避免为每条记录分配对象。
+ * 记录在页内的布局：
+ * [length 4][status 1][xid 8][beginTS 8][deleteXid 8][prevVersionPointer 8][pageId 4][slotId 4][data ...]
+ * 每条记录是一个版本：xid 为创建它的事务，deleteXid 为删除它或用新版本替换它的事务，由快照据此判断是否可见。
+ * 数据页中只有最新版本，被替换的旧版本复制到 UNDO 段，prevVersionPointer 指向它，依次串成版本链。
+ */
 public class Record {
-    int length;              // 记录长度
+    public static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 8 + 8 + 4 + 4;
+    // 版本未被删除或替换时的 deleteXid
+    public static final long NOT_DELETED = Long.MAX_VALUE;
+    // 没有上一版本时的 prevVersionPointer
+    public static final long NO_PREV_VERSION = -1;
 
-    byte status;       // 0: 有效, 1: 删除, 2: 已更新
+    private static final int LENGTH = 0;               // 记录长度（含头部）
+    private static final int STATUS = 4;               // 0: 有效, 1: 删除, 2: 已更新
+    private static final int XID = 5;                  // 创建该版本的事务 ID
+    private static final int BEGIN_TS = 13;            // 版本开始时间戳，由时间戳分配器分配
+    private static final int DELETE_XID = 21;          // 删除或替换该版本的事务 ID，未删除时为 NOT_DELETED
+    private static final int PREV_VERSION_POINTER = 29;// 上一版本在 UNDO 页中的位置，见 versionPointer
+    private static final int PAGE_ID = 37;             // 记录所在页面ID
+    private static final int SLOT_ID = 41;             // 记录所在槽位ID
 
-    long xid;                 // 所属事务 ID
+    private final Page page;
+    private final ByteBuffer buffer;
+    private int slotId;
+    private int offset;
 
-    long beginTS;             // 可选：版本开始时间戳
-    long endTS;               // 可选：版本结束时间戳
+    public Record(Page page, int slotId) {
+        this.page = page;
+        this.buffer = page.getBuffer();
+        moveTo(slotId);
+    }
 
-    long prevVersionPointer; // 上一版本的指针，可为 PageID+Offset 或 UndoLogRef
+    /**
+     * 在 offset 处写入一条新记录的头部和数据，返回指向它的游标
+     */
+    public static Record create(Page page, int slotId, int offset, byte[] data) {
+        ByteBuffer buffer = page.getBuffer();
+        buffer.putInt(offset + LENGTH, HEADER_SIZE + data.length);
+        buffer.put(offset + STATUS, RecordStatus.ACTIVE.getValue());
+        buffer.putLong(offset + XID, 0);
+        buffer.putLong(offset + BEGIN_TS, 0);
+        buffer.putLong(offset + DELETE_XID, NOT_DELETED);
+        buffer.putLong(offset + PREV_VERSION_POINTER, NO_PREV_VERSION);
+        buffer.putInt(offset + PAGE_ID, page.getHeader().getPageId());
+        buffer.putInt(offset + SLOT_ID, slotId);
+        buffer.put(offset + HEADER_SIZE, data);
+        page.setSlot(slotId, offset, true);
+        return new Record(page, slotId);
+    }
 
-    byte[] nullBitmap;        // null 位图（变长字段可为空）
-    short[] fieldOffsets;     // 每个字段起始位置（变长字段支持）
+    /**
+     * 版本指针：高 32 位为 UNDO 页的页号，低 32 位为页内槽位
+     */
+    public static long versionPointer(int pageId, int slotId) {
+        return (long) pageId << 32 | slotId;
+    }
 
-    byte[] data;              // 实际数据（变长字段拼接）
+    public static int pointerPageId(long pointer) {
+        return (int) (pointer >>> 32);
+    }
 
-    // 记录引用
-    int pageId;               // 记录所在页面ID
-    int slotId;               // 记录所在槽位ID
+    public static int pointerSlotId(long pointer) {
+        return (int) pointer;
+    }
 
-    //用于B+树
-    private Map<String, Object> fields = new HashMap<>();
+    // 读取 offset 处记录的总长度，页面整理空间时使用
+    public static int lengthAt(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + LENGTH);
+    }
 
+    /**
+     * 将游标移动到同一页面的另一个槽位
+     */
+    public Record moveTo(int slotId) {
+        this.slotId = slotId;
+        this.offset = page.getSlotOffset(slotId);
+        return this;
+    }
+
+    public Page getPage() { return page; }
+    public int getOffset() { return offset; }
+
+    public int getLength() { return buffer.getInt(offset + LENGTH); }
+
+    public byte getStatus() { return buffer.get(offset + STATUS); }
+    public void setStatus(byte status) { buffer.put(offset + STATUS, status); }
+
+    public long getXid() { return buffer.getLong(offset + XID); }
+    public void setXid(long xid) { buffer.putLong(offset + XID, xid); }
+
+    public long getBeginTS() { return buffer.getLong(offset + BEGIN_TS); }
+    public void setBeginTS(long beginTS) { buffer.putLong(offset + BEGIN_TS, beginTS); }
+
+    public long getDeleteXid() { return buffer.getLong(offset + DELETE_XID); }
+    public void setDeleteXid(long deleteXid) { buffer.putLong(offset + DELETE_XID, deleteXid); }
+
+    public long getPrevVersionPointer() { return buffer.getLong(offset + PREV_VERSION_POINTER); }
+    public void setPrevVersionPointer(long pointer) { buffer.putLong(offset + PREV_VERSION_POINTER, pointer); }
+
+    public int getPageId() { return buffer.getInt(offset + PAGE_ID); }
+    public int getSlotId() { return slotId; }
+
+    public int getDataLength() {
+        return getLength() - HEADER_SIZE;
+    }
+
+    /**
+     * 记录数据的只读视图，不拷贝
+     */
+    public ByteBuffer getDataBuffer() {
+        return buffer.asReadOnlyBuffer().slice(offset + HEADER_SIZE, getDataLength());
+    }
+
+    /**
+     * 拷贝出记录数据，需要在页面之外持有数据时使用
+     */
+    public byte[] getData() {
+        int length = getDataLength();
+        // 先检查边界再分配：乐观读可能读到修改到一半的长度
+        Objects.checkFromIndexSize(offset + HEADER_SIZE, length, buffer.capacity());
+        byte[] data = new byte[length];
+        buffer.get(offset + HEADER_SIZE, data);
+        return data;
+    }
+
+    /**
+     * 原地覆盖记录数据，新数据长度必须与原数据一致
+     */
+    public void setData(byte[] data) {
+        if (data.length != getDataLength()) {
+            throw new IllegalArgumentException("记录数据长度不一致: " + data.length + " != " + getDataLength());
+        }
+        buffer.put(offset + HEADER_SIZE, data);
+    }
 }
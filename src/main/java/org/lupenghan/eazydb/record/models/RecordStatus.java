@@ -6,7 +6,9 @@ import lombok.Getter;
 public enum RecordStatus {
     ACTIVE ((byte)0)  ,
     DELETED ((byte)1),
-    UPDATED ((byte)2) ;
+    UPDATED ((byte)2),
+    // UNDO 页中只保存与替换它的版本之间差异的副本
+    DELTA ((byte)3) ;
     private final byte value;
     RecordStatus(byte value) {
         this.value = value;
@@ -0,0 +1,323 @@
+package org.lupenghan.eazydb.record.models;
+
+import org.lupenghan.eazydb.table.models.Column;
+import org.lupenghan.eazydb.table.models.DataType;
+import org.lupenghan.eazydb.table.models.Table;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * 按表结构编码的行格式，即记录的 data 部分：
+ * [空值位图，每列 1 位][定长列，按列顺序各占类型宽度][变长列结束偏移数组，每项 2 字节][变长列数据 ...]
+ * 偏移都相对行首；第 k 个变长列从第 k-1 个的结束偏移（k 为 0 时为偏移数组之后）开始。
+ * 空值的定长列仍占位并填 0，空值的变长列长度为 0，因此任意一列都能直接定位，不必解码整行。
+ * 所有方法都以 row.position() 为行首、row.limit() 为行尾，不修改 row 的位置；
+ * 定位前检查边界，乐观读到修改到一半的行时抛出异常而不是读出页外的数据。
+ */
+public class RowCodec {
+    private static final int OFFSET_SIZE = 2;
+    // 行长不能超过偏移能表示的范围，页面最大 32KB，实际不会触及
+    private static final int MAX_ROW_SIZE = 0xFFFF;
+
+    private final List<Column> columns;
+    private final int nullBitmapSize;
+    // 定长列为在行内的偏移，变长列为在偏移数组中的序号
+    private final int[] positions;
+    private final int varOffsetsStart;
+    private final int varDataStart;
+
+    public RowCodec(List<Column> columns) {
+        this.columns = columns;
+        this.nullBitmapSize = (columns.size() + 7) / 8;
+        this.positions = new int[columns.size()];
+        int fixedEnd = nullBitmapSize;
+        int varCount = 0;
+        for (int i = 0; i < columns.size(); i++) {
+            DataType type = columns.get(i).getType();
+            if (type.isVariableLength()) {
+                positions[i] = varCount++;
+            } else {
+                positions[i] = fixedEnd;
+                fixedEnd += type.getDefaultLength();
+            }
+        }
+        this.varOffsetsStart = fixedEnd;
+        this.varDataStart = fixedEnd + varCount * OFFSET_SIZE;
+    }
+
+    public static RowCodec of(Table table) {
+        return new RowCodec(table.getColumns());
+    }
+
+    public int getColumnCount() {
+        return columns.size();
+    }
+
+    /**
+     * 列名对应的列序号，不存在时返回 -1
+     */
+    public int indexOf(String columnName) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columns.get(i).getName().equalsIgnoreCase(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 把各列的值编码为一行，值的类型见 get；列数不符、非空列为空、类型不符或超出 VARCHAR 长度时抛出 IllegalArgumentException
+     */
+    public byte[] encode(Object[] values) {
+        if (values.length != columns.size()) {
+            throw new IllegalArgumentException("列数不符: 需要 " + columns.size() + " 列，给出 " + values.length + " 列");
+        }
+        byte[][] varData = new byte[columns.size()][];
+        int size = varDataStart;
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (values[i] == null) {
+                if (!column.isNullable()) {
+                    throw new IllegalArgumentException("列 " + column.getName() + " 不能为空");
+                }
+            } else if (column.getType().isVariableLength()) {
+                varData[i] = encodeString(column, values[i]);
+                size += varData[i].length;
+            }
+        }
+        if (size > MAX_ROW_SIZE) {
+            throw new IllegalArgumentException("行数据过长: " + size + " 字节");
+        }
+
+        ByteBuffer row = ByteBuffer.allocate(size);
+        int varEnd = varDataStart;
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            if (values[i] == null) {
+                row.put(i >>> 3, (byte) (row.get(i >>> 3) | 1 << (i & 7)));
+            }
+            if (column.getType().isVariableLength()) {
+                if (varData[i] != null) {
+                    row.put(varEnd, varData[i]);
+                    varEnd += varData[i].length;
+                }
+                row.putShort(varOffsetsStart + positions[i] * OFFSET_SIZE, (short) varEnd);
+            } else if (values[i] != null) {
+                putFixed(row, positions[i], column, values[i]);
+            }
+        }
+        return row.array();
+    }
+
+    /**
+     * 解码整行，先校验行的结构，与表结构不符时抛出 IllegalArgumentException
+     */
+    public Object[] decode(ByteBuffer row) {
+        check(row);
+        Object[] values = new Object[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = get(row, i);
+        }
+        return values;
+    }
+
+    /**
+     * 校验行的长度和变长列偏移是否与表结构一致
+     */
+    public void check(ByteBuffer row) {
+        int length = row.remaining();
+        int end = varDataStart;
+        for (int offset = varOffsetsStart; offset < varDataStart && end <= length; offset += OFFSET_SIZE) {
+            int next = Short.toUnsignedInt(row.getShort(row.position() + offset));
+            if (next < end) {
+                throw new IllegalArgumentException("行数据格式与表结构不符");
+            }
+            end = next;
+        }
+        if (end != length) {
+            throw new IllegalArgumentException("行数据格式与表结构不符");
+        }
+    }
+
+    public boolean isNull(ByteBuffer row, int index) {
+        checkIndex(row, index >>> 3, 1);
+        return (row.get(row.position() + (index >>> 3)) & 1 << (index & 7)) != 0;
+    }
+
+    /**
+     * 第 index 列的原始字节视图，不拷贝；两行同类型的列可以直接用 equals 比较
+     */
+    public ByteBuffer field(ByteBuffer row, int index) {
+        int start;
+        int end;
+        if (columns.get(index).getType().isVariableLength()) {
+            int k = positions[index];
+            start = k == 0 ? varDataStart : varEnd(row, k - 1);
+            end = varEnd(row, k);
+        } else {
+            start = positions[index];
+            end = start + columns.get(index).getType().getDefaultLength();
+        }
+        checkIndex(row, start, end - start);
+        return row.slice(row.position() + start, end - start);
+    }
+
+    /**
+     * 读取第 index 列的值：INT 为 Integer，BIGINT 为 Long，FLOAT 为 Float，DOUBLE 为 Double，BOOLEAN 为 Boolean，
+     * VARCHAR 为 String，DATE 为 LocalDate，TIMESTAMP 为 Instant；空值为 null
+     */
+    public Object get(ByteBuffer row, int index) {
+        if (isNull(row, index)) {
+            return null;
+        }
+        ByteBuffer value = field(row, index);
+        return switch (columns.get(index).getType()) {
+            case INT -> value.getInt(0);
+            case BIGINT -> value.getLong(0);
+            case FLOAT -> value.getFloat(0);
+            case DOUBLE -> value.getDouble(0);
+            case BOOLEAN -> value.get(0) != 0;
+            case VARCHAR -> StandardCharsets.UTF_8.decode(value).toString();
+            case DATE -> LocalDate.ofEpochDay(value.getInt(0));
+            case TIMESTAMP -> Instant.ofEpochMilli(value.getLong(0));
+        };
+    }
+
+    /**
+     * 把 SQL 字面量转换为第 index 列的值，literal 为 null 表示 NULL
+     */
+    public Object parse(int index, String literal) {
+        if (literal == null) {
+            return null;
+        }
+        Column column = columns.get(index);
+        String text = literal.trim();
+        try {
+            return switch (column.getType()) {
+                case INT -> Integer.parseInt(text);
+                case BIGINT -> Long.parseLong(text);
+                case FLOAT -> Float.parseFloat(text);
+                case DOUBLE -> Double.parseDouble(text);
+                case BOOLEAN -> parseBoolean(text);
+                case VARCHAR -> literal;
+                case DATE -> LocalDate.parse(text);
+                case TIMESTAMP -> parseTimestamp(text);
+            };
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw new IllegalArgumentException("列 " + column.getName() + " 的值无效: " + literal, e);
+        }
+    }
+
+    /**
+     * 按列名给出的字面量组成一行的值；columnNames 为 null 时按表中列的顺序对应，未给出的列取默认值或 NULL
+     */
+    public Object[] parse(String[] columnNames, String[] literals) {
+        Object[] values = new Object[columns.size()];
+        if (columnNames == null) {
+            if (literals.length != columns.size()) {
+                throw new IllegalArgumentException("列数不符: 需要 " + columns.size() + " 列，给出 " + literals.length + " 列");
+            }
+            for (int i = 0; i < values.length; i++) {
+                values[i] = parse(i, literals[i]);
+            }
+            return values;
+        }
+        if (columnNames.length != literals.length) {
+            throw new IllegalArgumentException("列名与值的个数不一致");
+        }
+        boolean[] given = new boolean[columns.size()];
+        for (int i = 0; i < columnNames.length; i++) {
+            int index = indexOf(columnNames[i].trim());
+            if (index == -1) {
+                throw new IllegalArgumentException("列不存在: " + columnNames[i]);
+            }
+            values[index] = parse(index, literals[i]);
+            given[index] = true;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!given[i]) {
+                values[i] = parse(i, columns.get(i).getDefaultValue());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 把一行格式化为 (值, 值, ...) 的形式，供命令行显示
+     */
+    public String format(ByteBuffer row) {
+        Object[] values = decode(row);
+        StringBuilder sb = new StringBuilder("(");
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i] == null ? "NULL" : values[i]);
+        }
+        return sb.append(')').toString();
+    }
+
+    private int varEnd(ByteBuffer row, int k) {
+        int offset = varOffsetsStart + k * OFFSET_SIZE;
+        checkIndex(row, offset, OFFSET_SIZE);
+        return Short.toUnsignedInt(row.getShort(row.position() + offset));
+    }
+
+    private static void checkIndex(ByteBuffer row, int offset, int length) {
+        if (length < 0 || offset + length > row.remaining()) {
+            throw new IllegalArgumentException("行数据格式与表结构不符");
+        }
+    }
+
+    private static byte[] encodeString(Column column, Object value) {
+        if (!(value instanceof String s)) {
+            throw new IllegalArgumentException("列 " + column.getName() + " 需要字符串: " + value);
+        }
+        if (column.getLength() > 0 && s.length() > column.getLength()) {
+            throw new IllegalArgumentException("列 " + column.getName() + " 超出长度 " + column.getLength() + ": " + s);
+        }
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void putFixed(ByteBuffer row, int offset, Column column, Object value) {
+        try {
+            switch (column.getType()) {
+                case INT -> row.putInt(offset, ((Number) value).intValue());
+                case BIGINT -> row.putLong(offset, ((Number) value).longValue());
+                case FLOAT -> row.putFloat(offset, ((Number) value).floatValue());
+                case DOUBLE -> row.putDouble(offset, ((Number) value).doubleValue());
+                case BOOLEAN -> row.put(offset, (byte) ((Boolean) value ? 1 : 0));
+                case DATE -> row.putInt(offset, (int) ((LocalDate) value).toEpochDay());
+                case TIMESTAMP -> row.putLong(offset, ((Instant) value).toEpochMilli());
+                default -> throw new IllegalStateException("不是定长类型: " + column.getType());
+            }
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("列 " + column.getName() + " 的值类型不符: " + value, e);
+        }
+    }
+
+    private static boolean parseBoolean(String text) {
+        if (text.equalsIgnoreCase("true") || text.equals("1")) {
+            return true;
+        }
+        if (text.equalsIgnoreCase("false") || text.equals("0")) {
+            return false;
+        }
+        throw new NumberFormatException("不是布尔值: " + text);
+    }
+
+    // 接受 ISO-8601 时刻，或按本地时区解释的 yyyy-MM-dd HH:mm:ss
+    private static Instant parseTimestamp(String text) {
+        if (text.endsWith("Z")) {
+            return Instant.parse(text);
+        }
+        return LocalDateTime.parse(text.replace(' ', 'T')).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
@@ -0,0 +1,20 @@
+package org.lupenghan.eazydb.record.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * 从 UNDO 页中复制出的旧版本，可以在页面之外持有。
+ * delta 为 true 时 data 是 encodeDelta 的结果，要用替换它的版本的数据还原
+ */
+@Getter
+@AllArgsConstructor
+public class UndoVersion {
+    private final long xid;
+    private final long beginTS;
+    // 用新版本替换它的事务
+    private final long deleteXid;
+    private final long prevVersionPointer;
+    private final byte[] data;
+    private final boolean delta;
+}
@@ -0,0 +1,19 @@
+package org.lupenghan.eazydb.record.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 从一个页面中复制出的、对快照可见的记录数据，按槽位顺序排列，可以在页面之外持有。
+ * 需要旧版本的记录先占一个 null 位置，对应的版本指针和最新版本的数据依次放在 olderVersions、newerData 中，
+ * 之后沿版本链补齐；只保存差异的旧版本要用 newerData 还原
+ */
+@Getter
+@AllArgsConstructor
+public class VisibleRows {
+    private final List<byte[]> rows;
+    private final List<Long> olderVersions;
+    private final List<byte[]> newerData;
+}
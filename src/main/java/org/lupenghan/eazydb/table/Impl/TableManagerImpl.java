@@ -11,14 +11,15 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Data
 public class TableManagerImpl implements TableManager {
     private static final String CATALOG_DIR = "data/catalog/";
-    private final Map<String, Table> tableMap = new HashMap<>();
+    // 后台清理线程会并发遍历表
+    private final Map<String, Table> tableMap = new ConcurrentHashMap<>();
     private final ObjectMapper mapper = new ObjectMapper();
 
     public TableManagerImpl() throws IOException {
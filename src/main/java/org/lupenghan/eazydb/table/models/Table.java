@@ -24,4 +24,6 @@ public class Table {
     private long lastModifiedTime;          // 最后修改时间
     private int rowCount;                   // 行数统计（可选）
     private int pageCount;                  // 页数统计（可选）
+    private int segmentId;                  // 数据所在的段，0 表示旧版共用的 page.page
+    private boolean compressed;             // 数据页在磁盘上压缩存放（CREATE TABLE ... COMPRESSED）
 }
@@ -0,0 +1,101 @@
+package org.lupenghan.eazydb.transaction.Impl;
+
+import lombok.extern.slf4j.Slf4j;
+import org.lupenghan.eazydb.transaction.interfaces.TimestampOracle;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于一个 AtomicLong 的时间戳分配器。
+ * 文件中只保存一个 8 字节的上限：分配前先把上限按批推进并落盘，分配本身只是一次原子自增，
+ * 每 batch 个时间戳才写一次文件。重启后从保存的上限继续分配，跳过上次预留但未用完的部分。
+ */
+@Slf4j
+public class TimestampOracleImpl implements TimestampOracle {
+    public static final String DEFAULT_FILE = "timestamp.oracle";
+    // 每次预留的时间戳个数
+    private static final long DEFAULT_BATCH = 1 << 16;
+
+    private final FileChannel channel;
+    private final long batch;
+    private final AtomicLong last;
+    // 已落盘的上限，分配出去的时间戳都不超过它
+    private volatile long reserved;
+
+    public TimestampOracleImpl(String filePath) throws IOException {
+        this(filePath, DEFAULT_BATCH);
+    }
+
+    public TimestampOracleImpl(String filePath, long batch) throws IOException {
+        if (batch <= 0) {
+            throw new IllegalArgumentException("预留批量必须为正数: " + batch);
+        }
+        Path path = Paths.get(filePath);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.batch = batch;
+        long persisted = 0;
+        if (channel.size() >= Long.BYTES) {
+            ByteBuffer buf = ByteBuffer.allocate(Long.BYTES);
+            while (buf.hasRemaining()) {
+                if (channel.read(buf, buf.position()) < 0) {
+                    break;
+                }
+            }
+            persisted = buf.getLong(0);
+        }
+        this.last = new AtomicLong(persisted);
+        this.reserved = persisted;
+        log.info("时间戳从 {} 之后开始分配", persisted);
+    }
+
+    @Override
+    public long next() {
+        long timestamp = last.incrementAndGet();
+        if (timestamp > reserved) {
+            reserve(timestamp);
+        }
+        return timestamp;
+    }
+
+    @Override
+    public long current() {
+        return last.get();
+    }
+
+    @Override
+    public void advanceTo(long timestamp) {
+        last.accumulateAndGet(timestamp, Math::max);
+        if (timestamp > reserved) {
+            reserve(timestamp);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // 超出上限的调用方在这里排队，上限落盘之后才能把时间戳交出去
+    private synchronized void reserve(long timestamp) {
+        if (timestamp <= reserved) {
+            return;
+        }
+        long limit = timestamp + batch;
+        try {
+            ByteBuffer buf = ByteBuffer.allocate(Long.BYTES).putLong(0, limit);
+            while (buf.hasRemaining()) {
+                channel.write(buf, buf.position());
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("保存时间戳上限失败", e);
+        }
+        reserved = limit;
+    }
+}
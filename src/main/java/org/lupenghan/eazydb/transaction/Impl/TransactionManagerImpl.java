@@ -10,15 +10,18 @@ import org.lupenghan.eazydb.log.models.LogRecord;
 import org.lupenghan.eazydb.page.interfaces.PageManager;
 import org.lupenghan.eazydb.page.models.Page;
 import org.lupenghan.eazydb.record.interfaces.RecordManager;
+import org.lupenghan.eazydb.transaction.interfaces.TimestampOracle;
 import org.lupenghan.eazydb.transaction.interfaces.TransactionManager;
+import org.lupenghan.eazydb.transaction.models.Snapshot;
 import org.lupenghan.eazydb.transaction.models.TransactionStatus;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @AllArgsConstructor
@@ -28,25 +31,56 @@ public class TransactionManagerImpl implements TransactionManager {
     private final LogManager logManager;
     private final LockManager lockManager;
     private final PageManager pageManager;
-    private final AtomicLong nextXid;
+    // 事务号就是事务的开始时间戳
+    private final TimestampOracle timestampOracle;
     private final Map<Long, TransactionStatus> transactionStatus;
     private final Map<Long, Map<Page, Lock>> transactionLocks;
     private final Map<Long, List<Page>> modifiedPagesMap;
     private final Map<Long, List<Record>> modifiedRecordsMap;
-    public TransactionManagerImpl(LogManager logManager, LockManager lockManager, PageManager pageManager ) {
+    // 正在进行的事务，分配事务号、拍快照和结束事务都在它的锁内进行，快照看到的是一致的活跃集合
+    private final NavigableSet<Long> activeXids;
+    private final Map<Long, Snapshot> snapshots;
+    public TransactionManagerImpl(LogManager logManager, LockManager lockManager, PageManager pageManager ) throws IOException {
+        this(logManager, lockManager, pageManager, new TimestampOracleImpl(TimestampOracleImpl.DEFAULT_FILE));
+    }
+
+    public TransactionManagerImpl(LogManager logManager, LockManager lockManager, PageManager pageManager,
+                                  TimestampOracle timestampOracle) throws IOException {
         this.logManager = logManager;
         this.lockManager = lockManager;
         this.pageManager = pageManager;
-        this.nextXid = new AtomicLong(1);
+        this.timestampOracle = timestampOracle;
+        // 记录上的事务号决定可见性，不能重复使用。还没有分配过时间戳时（新库，或者升级前的库），
+        // 以日志中出现过的最大事务号为下界
+        if (timestampOracle.current() == 0) {
+            timestampOracle.advanceTo(maxLoggedXid(logManager));
+        }
+        this.activeXids = new TreeSet<>();
+        this.snapshots = new ConcurrentHashMap<>();
         this.transactionStatus = new ConcurrentHashMap<>();
         this.transactionLocks = new ConcurrentHashMap<>();
         this.modifiedPagesMap = new ConcurrentHashMap<>();
         this.modifiedRecordsMap = new ConcurrentHashMap<>();
     }
 
+    private static long maxLoggedXid(LogManager logManager) throws IOException {
+        long max = 0;
+        for (LogRecord record : logManager.loadAllLogs()) {
+            max = Math.max(max, record.getXid());
+        }
+        return max;
+    }
+
     @Override
     public long begin() {
-        long xid = nextXid.getAndIncrement();
+        long xid;
+        synchronized (activeXids) {
+            xid = timestampOracle.next();
+            long xmin = activeXids.isEmpty() ? xid : activeXids.first();
+            long[] active = activeXids.stream().mapToLong(Long::longValue).toArray();
+            snapshots.put(xid, new Snapshot(xid, xmin, xid + 1, active));
+            activeXids.add(xid);
+        }
         transactionStatus.put(xid, TransactionStatus.ACTIVE);
         transactionLocks.put(xid, new ConcurrentHashMap<>());
         modifiedPagesMap.put(xid, new ArrayList<>());
@@ -61,10 +95,17 @@ public class TransactionManagerImpl implements TransactionManager {
         }
 
         try {
-            // 写入提交日志
-            logManager.flush();
-            // 更新事务状态
-            transactionStatus.put(xid, TransactionStatus.COMMITTED);
+            // 写入提交日志；只读事务没有日志要刷
+            List<Page> modified = modifiedPagesMap.get(xid);
+            if (modified != null && !modified.isEmpty()) {
+                logManager.flush();
+            }
+            // 更新事务状态，之后开始的事务都能看到它的修改
+            synchronized (activeXids) {
+                transactionStatus.put(xid, TransactionStatus.COMMITTED);
+                activeXids.remove(xid);
+            }
+            snapshots.remove(xid);
             
             // 释放所有锁
             lockManager.releaseAllLocks(xid);
@@ -89,7 +130,11 @@ public class TransactionManagerImpl implements TransactionManager {
 //        recordManager.rollbackTransaction(xid);
 
         // 更新事务状态和清理
-        transactionStatus.put(xid, TransactionStatus.ABORTED);
+        synchronized (activeXids) {
+            transactionStatus.put(xid, TransactionStatus.ABORTED);
+            activeXids.remove(xid);
+        }
+        snapshots.remove(xid);
         lockManager.releaseAllLocks(xid);
         transactionLocks.remove(xid);
         modifiedPagesMap.remove(xid);
@@ -100,7 +145,8 @@ public class TransactionManagerImpl implements TransactionManager {
     public List<LogRecord> getUndoLogs(long xid) throws IOException {
         List<LogRecord> logs = logManager.loadAllLogs();
         return logs.stream()
-                .filter(l -> l.getXid() == xid && l.getLogType() == LogRecord.TYPE_UNDO)
+                .filter(l -> l.getXid() == xid && (l.getLogType() == LogRecord.TYPE_UNDO
+                        || l.getLogType() == LogRecord.TYPE_INSERT_BATCH))
                 .collect(Collectors.toList());
     }
     @Override
@@ -108,6 +154,33 @@ public class TransactionManagerImpl implements TransactionManager {
         return transactionStatus.getOrDefault(xid, TransactionStatus.ABORTED);
     }
 
+    @Override
+    public Snapshot getSnapshot(long xid) {
+        return snapshots.get(xid);
+    }
+
+    @Override
+    public long getOldestSnapshotXmin() {
+        synchronized (activeXids) {
+            // 没有活跃快照时，之后开始的事务号都大于当前时间戳
+            long oldest = timestampOracle.current() + 1;
+            for (Snapshot snapshot : snapshots.values()) {
+                oldest = Math.min(oldest, snapshot.getXmin());
+            }
+            return oldest;
+        }
+    }
+
+    @Override
+    public TimestampOracle getTimestampOracle() {
+        return timestampOracle;
+    }
+
+    @Override
+    public boolean isAborted(long xid) {
+        return transactionStatus.get(xid) == TransactionStatus.ABORTED;
+    }
+
     //锁相关
     @Override
     public List<Page> getModifiedPages(long TransactionID) {
@@ -115,6 +188,14 @@ public class TransactionManagerImpl implements TransactionManager {
 
     }
 
+    @Override
+    public void addModifiedPage(long transactionId, Page page) {
+        List<Page> pages = modifiedPagesMap.computeIfAbsent(transactionId, k -> new ArrayList<>());
+        if (!pages.contains(page)) {
+            pages.add(page);
+        }
+    }
+
     @Override
     public List<Record> getModifiedRecords(long transactionId) {
         return new ArrayList<>(modifiedRecordsMap.getOrDefault(transactionId, new ArrayList<>()));
@@ -135,7 +216,7 @@ public class TransactionManagerImpl implements TransactionManager {
             
             // 如果是写操作，将页面添加到修改页面列表中
             if (lockType == LockType.EXCLUSIVE_LOCK) {
-                modifiedPagesMap.computeIfAbsent(transactionId, k -> new ArrayList<>()).add(page);
+                addModifiedPage(transactionId, page);
             }
         } else {
             log.warn("事务 {} 无法获取页 {} 的 {} 锁", transactionId, pageId, lockType);
@@ -164,4 +245,9 @@ public class TransactionManagerImpl implements TransactionManager {
     public LockManager getLockManager() {
         return this.lockManager;
     }
+
+    @Override
+    public void close() throws IOException {
+        timestampOracle.close();
+    }
 }
@@ -0,0 +1,18 @@
+package org.lupenghan.eazydb.transaction.interfaces;
+
+import java.io.IOException;
+
+/**
+ * 时间戳分配器：事务的开始时间戳（即事务号）和记录的版本时间戳都从这里取，
+ * 全局严格递增，重启后也不会重复。
+ */
+public interface TimestampOracle {
+    // 分配一个比之前所有时间戳都大的时间戳
+    long next();
+    // 最近一次分配的时间戳，不分配新的
+    long current();
+    // 保证之后分配的时间戳都大于 timestamp，用于从旧数据中恢复时间戳的下界
+    void advanceTo(long timestamp);
+    // 关闭保存上限的文件，之后不能再分配
+    void close() throws IOException;
+}
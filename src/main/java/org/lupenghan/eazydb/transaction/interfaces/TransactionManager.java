@@ -5,6 +5,7 @@ import org.lupenghan.eazydb.lock.models.Lock;
 import org.lupenghan.eazydb.lock.models.LockType;
 import org.lupenghan.eazydb.log.models.LogRecord;
 import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.transaction.models.Snapshot;
 import org.lupenghan.eazydb.transaction.models.TransactionStatus;
 
 import java.io.IOException;
@@ -16,8 +17,18 @@ public interface TransactionManager {
     void rollback(long xid) throws IOException;
     //获得事务状态
     TransactionStatus getTransactionsStatus(long TransactionsId);
-    // 获得哪些内容修改了, 用于进行数据恢复
+    // 事务开始时拍下的快照，事务结束后返回 null
+    Snapshot getSnapshot(long xid);
+    // 清理界限：所有活跃快照中最小的 xmin。早于它结束的事务，现在和之后的快照都能看到其结果
+    long getOldestSnapshotXmin();
+    // 事务号和记录版本时间戳共用的时间戳分配器
+    TimestampOracle getTimestampOracle();
+    // 事务是否已回滚；之前运行中结束的事务状态未知，按已提交处理
+    boolean isAborted(long xid);
+    // 获得哪些内容修改了, 用于进行数据恢复；返回的是副本
     List<Page> getModifiedPages (long TransactionID);
+    // 记录事务修改过的页面，同一页面只记一次
+    void addModifiedPage(long transactionId, Page page);
     List<Record> getModifiedRecords(long transactionId);
 
     //锁相关
@@ -47,5 +58,7 @@ public interface TransactionManager {
 
     LockManager getLockManager();
     List<LogRecord> getUndoLogs(long xid) throws IOException;
+    // 关闭时间戳分配器的文件，数据库关闭时调用
+    void close() throws IOException;
 
 }
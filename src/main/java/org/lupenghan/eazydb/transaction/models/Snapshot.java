@@ -0,0 +1,45 @@
+package org.lupenghan.eazydb.transaction.models;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * 事务开始时拍下的快照：xmin 为当时仍在进行的最小事务号，xmax 为下一个待分配的事务号，
+ * active 为当时仍在进行的其他事务。快照中可见的只有自己的修改，以及快照之前已经结束的事务的修改；
+ * 已结束的事务是提交还是回滚，由事务管理器另行判断。
+ */
+@Getter
+public class Snapshot {
+    private final long xid;
+    private final long xmin;
+    private final long xmax;
+    // 升序排列，不含自己
+    @Getter(AccessLevel.NONE)
+    private final long[] active;
+
+    public Snapshot(long xid, long xmin, long xmax, long[] active) {
+        this.xid = xid;
+        this.xmin = xmin;
+        this.xmax = xmax;
+        this.active = active;
+    }
+
+    /**
+     * 事务 other 在快照时是否仍在进行（或尚未开始）
+     */
+    public boolean isInProgress(long other) {
+        if (other >= xmax) {
+            return true;
+        }
+        return other >= xmin && Arrays.binarySearch(active, other) >= 0;
+    }
+
+    /**
+     * 事务 other 的修改是否可能对本快照可见：是自己的修改，或者 other 在快照之前已经结束
+     */
+    public boolean sees(long other) {
+        return other == xid || !isInProgress(other);
+    }
+}
@@ -84,16 +84,28 @@ public class SQLParser {
                 // 支持 UPDATE table SET value='value' WHERE page=N AND slot=M
                 // 或 UPDATE table SET col='value' WHERE page=N AND slot=M
                 Pattern updatePattern = Pattern.compile(
-                        "UPDATE (\\w+) SET (?:value|\\w+)=['\"]?([^'\"]+)['\"]? WHERE page=(\\d+) AND slot=(\\d+)",
+                        "UPDATE (\\w+) SET (\\w+)=(['\"]?)([^'\"]+)\\3 WHERE page=(\\d+) AND slot=(\\d+)",
                         Pattern.CASE_INSENSITIVE);
                 Matcher updateMatcher = updatePattern.matcher(sql);
                 if (updateMatcher.find()) {
+                    String literal = updateMatcher.group(4);
+                    boolean quoted = !updateMatcher.group(3).isEmpty();
                     return Command.builder()
                             .type(CommandType.UPDATE)
                             .tableName(updateMatcher.group(1))
-                            .value(updateMatcher.group(2).getBytes())
-                            .pageId(Integer.parseInt(updateMatcher.group(3)))
-                            .slotId(Integer.parseInt(updateMatcher.group(4)))
+                            .columns(new String[]{updateMatcher.group(2)})
+                            .values(new String[]{!quoted && literal.equalsIgnoreCase("NULL") ? null : literal})
+                            .value(literal.getBytes())
+                            .pageId(Integer.parseInt(updateMatcher.group(5)))
+                            .slotId(Integer.parseInt(updateMatcher.group(6)))
+                            .build();
+                }
+                break;
+
+            case "SHOW":
+                if (sql.toUpperCase().matches("SHOW\\s+BUFFERPOOL\\s+STATS")) {
+                    return Command.builder()
+                            .type(CommandType.SHOW_BUFFERPOOL_STATS)
                             .build();
                 }
                 break;
@@ -121,6 +133,7 @@ public class SQLParser {
                                 .type(CommandType.INSERT)
                                 .tableName(tableName)
                                 .columns(columns)
+                                .values(splitValues(valuesPart))
                                 .value(cleanValue.getBytes())
                                 .build();
                     }
@@ -132,6 +145,39 @@ public class SQLParser {
         return Command.builder().type(CommandType.UNKNOWN).build();
     }
 
+    /**
+     * 按逗号拆分 VALUES 中的各个值，引号内的逗号不拆分；去掉引号，不带引号的 NULL 表示空值
+     */
+    private static String[] splitValues(String valuesPart) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        char quote = 0;
+        boolean quoted = false;
+        for (int i = 0; i <= valuesPart.length(); i++) {
+            char c = i < valuesPart.length() ? valuesPart.charAt(i) : ',';
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '\'' || c == '"') {
+                // 引号前只可能是空白，丢弃
+                current.setLength(0);
+                quote = c;
+                quoted = true;
+            } else if (c == ',') {
+                String value = quoted ? current.toString() : current.toString().trim();
+                values.add(!quoted && value.equalsIgnoreCase("NULL") ? null : value);
+                current.setLength(0);
+                quoted = false;
+            } else if (!quoted) {
+                current.append(c);
+            }
+        }
+        return values.toArray(new String[0]);
+    }
+
     @Data
     @Builder
     @NoArgsConstructor
@@ -144,6 +190,8 @@ public class SQLParser {
         private int slotId;
         private byte[] value;
         private String[] columns;
+        // INSERT / UPDATE 中逐个拆开的值，null 元素表示 NULL
+        private String[] values;
     }
 
     public enum CommandType {
@@ -154,6 +202,7 @@ public class SQLParser {
         SELECT_ONE,
         UPDATE,
         DELETE,
+        SHOW_BUFFERPOOL_STATS,
         UNKNOWN
     }
 }
\ No newline at end of file
@@ -12,12 +12,12 @@ import java.util.regex.Pattern;
  */
 public class TableParser {
 
-    // 支持简单的 CREATE TABLE 语法解析
+    // 支持简单的 CREATE TABLE 语法解析，列定义之后可以跟 COMPRESSED 表示数据页压缩存放
     public static Table parseCreateTable(String sql) {
         sql = sql.trim().replaceAll(";", "");
 
         Pattern pattern = Pattern.compile(
-                "CREATE\\s+TABLE\\s+(\\w+)\\s*\\((.*)\\)", Pattern.CASE_INSENSITIVE);
+                "CREATE\\s+TABLE\\s+(\\w+)\\s*\\((.*)\\)\\s*(COMPRESSED)?\\s*$", Pattern.CASE_INSENSITIVE);
 
         Matcher matcher = pattern.matcher(sql);
         if (!matcher.find()) {
@@ -70,6 +70,7 @@ public class TableParser {
                 .lastModifiedTime(System.currentTimeMillis())
                 .rowCount(0)
                 .pageCount(0)
+                .compressed(matcher.group(3) != null)
                 .build();
     }
 
@@ -5,18 +5,25 @@ import lombok.extern.slf4j.Slf4j;
 import org.lupenghan.eazydb.lock.models.Lock;
 import org.lupenghan.eazydb.lock.models.LockType;
 import org.lupenghan.eazydb.page.interfaces.PageManager;
+import org.lupenghan.eazydb.page.models.BufferAccessStrategy;
 import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageId;
 import org.lupenghan.eazydb.record.interfaces.RecordManager;
 import org.lupenghan.eazydb.table.interfaces.TableManager;
-import org.lupenghan.eazydb.table.models.Column;
 import org.lupenghan.eazydb.table.models.ForeignKey;
 import org.lupenghan.eazydb.table.models.Table;
 import org.lupenghan.eazydb.transaction.interfaces.TransactionManager;
+import org.lupenghan.eazydb.transaction.models.Snapshot;
 import org.lupenghan.query.interfaces.QueryEngine;
 import org.lupenghan.eazydb.record.models.Record;
+import org.lupenghan.eazydb.record.models.RowCodec;
+import org.lupenghan.eazydb.record.models.VisibleRows;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Slf4j
 public class QueryEngineImpl implements QueryEngine {
@@ -25,6 +32,8 @@ public class QueryEngineImpl implements QueryEngine {
     private final PageManager pageManager;
     private final RecordManager recordManager;
     private final TransactionManager transactionManager;
+    // 插入时最多尝试空闲空间映射给出的几个候选页面
+    private static final int MAX_FSM_PROBES = 4;
 
     public QueryEngineImpl(TableManager tableManager, PageManager pageManager, RecordManager recordManager, TransactionManager transactionManager) {
         this.tableManager = tableManager;
@@ -40,6 +49,8 @@ public class QueryEngineImpl implements QueryEngine {
 
         table.setCreatedTime(System.currentTimeMillis());
         table.setLastModifiedTime(System.currentTimeMillis());
+        // 每张表的数据放在独立的段中
+        table.setSegmentId(pageManager.createSegment(table.isCompressed()));
         tableManager.createTable(table);
 
         log.info("✅ 表 {} 创建成功，共 {} 列", table.getName(), table.getColumns().size());
@@ -50,11 +61,16 @@ public class QueryEngineImpl implements QueryEngine {
     public boolean dropTable(String tableName) throws IOException {
         log.info("执行 DROP TABLE {}", tableName);
 
+        Table table = tableManager.getTable(tableName);
         boolean success = tableManager.dropTable(tableName);
 
         if (!success) {
             throw new IOException("表删除失败，可能不存在: " + tableName);
         }
+        pageManager.dropFreeSpaceMap(tableName);
+        if (table != null && table.getSegmentId() != PageId.LEGACY_SEGMENT) {
+            pageManager.dropSegment(table.getSegmentId());
+        }
 
         log.info("表 {} 删除成功", tableName);
         return success;
@@ -77,6 +93,10 @@ public class QueryEngineImpl implements QueryEngine {
     @Override
     public void rollbackTransaction(long xid) throws IOException {
         log.info("回滚事务: {}", xid);
+        // 先按撤销日志恢复页面上的数据，否则重启后事务状态丢失，已回滚的修改会重新可见
+        if (!transactionManager.getModifiedPages(xid).isEmpty()) {
+            recordManager.rollbackTransaction(xid);
+        }
         transactionManager.rollback(xid);
     }
 
@@ -86,159 +106,346 @@ public class QueryEngineImpl implements QueryEngine {
 
         Table table = tableManager.getTable(tableName);
         if (table == null) throw new IllegalArgumentException("表不存在：" + tableName);
+        RowCodec codec = RowCodec.of(table);
+        codec.check(ByteBuffer.wrap(data));
+
+        // 先通过空闲空间映射找一个放得下的已有页面，找不到时才新建页面
+        int needed = Record.HEADER_SIZE + data.length + Page.SLOT_ENTRY_SIZE;
+        boolean inserted = false;
+        int afterPageId = 0;
+        for (int probe = 0; probe < MAX_FSM_PROBES && !inserted; probe++) {
+            int pageId = pageManager.findPageWithSpace(tableName, needed, afterPageId);
+            if (pageId == -1) {
+                break;
+            }
+            afterPageId = pageId;
+            Page page = pageManager.readPage(pageId);
+            if (page == null) {
+                continue;
+            }
+            try {
+                // 页面正被其他事务修改时不等待，换下一个候选页面
+                if (acquirePageLock(xid, page, LockType.EXCLUSIVE_LOCK) == null) {
+                    continue;
+                }
+                inserted = insertIntoPage(xid, tableName, page, data);
+            } finally {
+                pageManager.unpinPage(page);
+            }
+        }
 
-        // 创建新页并获取页级排他锁
-        Page page = pageManager.createPage();
-        Lock pageLock = acquirePageLock(xid, page, LockType.EXCLUSIVE_LOCK);
-        
-        if (pageLock == null) {
-            log.error("事务 {} 无法获取页 {} 的排他锁，可能发生死锁", xid, page.getHeader().getPageId());
-            rollbackTransaction(xid);
-            throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
+        if (!inserted) {
+            Page page = pageManager.createPage(table.getSegmentId());
+            try {
+                Lock pageLock = acquirePageLock(xid, page, LockType.EXCLUSIVE_LOCK);
+
+                if (pageLock == null) {
+                    log.error("事务 {} 无法获取页 {} 的排他锁，可能发生死锁", xid, page.getHeader().getPageId());
+                    rollbackTransaction(xid);
+                    throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
+                }
+
+                if (!insertIntoPage(xid, tableName, page, data)) {
+                    rollbackTransaction(xid);
+                    throw new IllegalArgumentException("记录过大，一个页面放不下: " + data.length + " 字节");
+                }
+            } finally {
+                pageManager.unpinPage(page);
+            }
         }
-        
-        try {
-            recordManager.insert(page, data, xid);
-        } catch (Exception e) {
-            log.error("事务 {} 插入记录失败", xid, e);
-            rollbackTransaction(xid);
-            throw e;
+        checkForeignKeys(table, codec, List.of(data));
+    }
+
+    /**
+     * 批量插入：按顺序填满页面，每个页面只加一次锁、写一条批量插入日志；外键对整批只扫描一次引用表
+     */
+    @Override
+    public void insertBatch(long xid, String tableName, List<byte[]> rows) throws IOException {
+        log.info("事务 {} 批量插入 {} 条记录到表 {}", xid, rows.size(), tableName);
+
+        Table table = tableManager.getTable(tableName);
+        if (table == null) throw new IllegalArgumentException("表不存在：" + tableName);
+        RowCodec codec = RowCodec.of(table);
+        for (byte[] data : rows) {
+            codec.check(ByteBuffer.wrap(data));
         }
-        for (ForeignKey fk : table.getForeignKeys()) {
-            // 查找对应字段
-            int fieldIndex = -1;
-            for (int i = 0; i < table.getColumns().size(); i++) {
-                if (table.getColumns().get(i).getName().equals(fk.getColumnName())) {
-                    fieldIndex = i;
+
+        int next = 0;
+        int afterPageId = 0;
+        int probes = 0;
+        while (next < rows.size()) {
+            // 先用空闲空间映射给出的已有页面，候选用完后在段末尾新建页面
+            Page page = null;
+            while (page == null && probes < MAX_FSM_PROBES) {
+                int needed = Record.HEADER_SIZE + rows.get(next).length + Page.SLOT_ENTRY_SIZE;
+                int pageId = pageManager.findPageWithSpace(tableName, needed, afterPageId);
+                if (pageId == -1) {
                     break;
                 }
+                afterPageId = pageId;
+                probes++;
+                page = pageManager.readPage(pageId);
+                // 页面正被其他事务修改时不等待，换下一个候选页面
+                if (page != null && acquirePageLock(xid, page, LockType.EXCLUSIVE_LOCK) == null) {
+                    pageManager.unpinPage(page);
+                    page = null;
+                }
             }
-            if (fieldIndex == -1) continue;
+            boolean fresh = page == null;
+            if (fresh) {
+                page = pageManager.createPage(table.getSegmentId());
+                afterPageId = page.getHeader().getPageId();
+                probes = MAX_FSM_PROBES;
+            }
+            try {
+                if (fresh && acquirePageLock(xid, page, LockType.EXCLUSIVE_LOCK) == null) {
+                    log.error("事务 {} 无法获取页 {} 的排他锁，可能发生死锁", xid, page.getHeader().getPageId());
+                    rollbackTransaction(xid);
+                    throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
+                }
+                int inserted = insertBatchIntoPage(xid, tableName, page, rows.subList(next, rows.size()));
+                if (inserted == 0 && fresh) {
+                    rollbackTransaction(xid);
+                    throw new IllegalArgumentException("记录过大，一个页面放不下: " + rows.get(next).length + " 字节");
+                }
+                next += inserted;
+            } finally {
+                pageManager.unpinPage(page);
+            }
+        }
+        checkForeignKeys(table, codec, rows);
+    }
 
-            // 提取该字段数据
-            Column col = table.getColumns().get(fieldIndex);
-            int offset = 0;
-            for (int i = 0; i < fieldIndex; i++) {
-                offset += table.getColumns().get(i).getLength();
+    /**
+     * 检查各行的外键值都存在于引用表中：每个外键收集整批的取值，只扫描一遍引用表
+     */
+    private void checkForeignKeys(Table table, RowCodec codec, List<byte[]> rows) throws IOException {
+        for (ForeignKey fk : table.getForeignKeys()) {
+            int fieldIndex = codec.indexOf(fk.getColumnName());
+            if (fieldIndex == -1) continue;
+            // NULL 外键不引用任何行，不检查
+            Set<ByteBuffer> missing = new HashSet<>();
+            for (byte[] data : rows) {
+                ByteBuffer row = ByteBuffer.wrap(data);
+                if (!codec.isNull(row, fieldIndex)) {
+                    missing.add(codec.field(row, fieldIndex));
+                }
             }
-            byte[] fieldValue = new byte[col.getLength()];
-            System.arraycopy(data, offset, fieldValue, 0, col.getLength());
+            if (missing.isEmpty()) continue;
 
             // 验证外键值是否存在
             Table referencedTable = tableManager.getTable(fk.getReferencedTable());
             if (referencedTable == null) throw new RuntimeException("外键引用表不存在: " + fk.getReferencedTable());
+            RowCodec referencedCodec = RowCodec.of(referencedTable);
+            int referencedIndex = referencedCodec.indexOf(fk.getReferencedColumn());
+            if (referencedIndex == -1) throw new RuntimeException("外键引用列不存在: " + fk.getReferencedColumn());
+            if (referencedTable.getColumns().get(referencedIndex).getType() != table.getColumns().get(fieldIndex).getType()) {
+                throw new RuntimeException("外键列 " + fk.getColumnName() + " 与引用列 " + fk.getReferencedColumn() + " 的类型不一致");
+            }
 
-            boolean found = false;
-            for (int i = 1; i <= pageManager.getTotalPages(); i++) {
-                Page p = pageManager.readPage(i);
-                for (Record r : recordManager.getAllRecords(p)) {
-                    byte[] candidate = r.getData();
-                    // 假设引用字段在开头，等长匹配
-                    if (startsWith(candidate, fieldValue)) {
-                        found = true;
-                        break;
+            int segmentId = referencedTable.getSegmentId();
+            int pageCount = pageManager.getPageCount(segmentId);
+            pageManager.readAhead(PageId.of(segmentId, 1), PageId.of(segmentId, pageCount));
+            BufferAccessStrategy strategy = pageManager.scanStrategy(pageCount);
+            for (int i = 1; i <= pageCount && !missing.isEmpty(); i++) {
+                // 只读检查，乐观读取不固定页面；直接在页面上比较引用列的字节，不拷贝记录。
+                // 乐观读失败会重跑，所以先收集命中的值，确认读取有效后再从集合中移除；
+                // 页面上的字段是页帧内存的视图，离开读取过程后可能被改写，命中的值要拷贝出来
+                List<ByteBuffer> matched = pageManager.readPage(PageId.of(segmentId, i), strategy, p -> {
+                    List<ByteBuffer> hits = new ArrayList<>();
+                    for (Record record : recordManager.getAllRecords(p)) {
+                        ByteBuffer candidate = record.getDataBuffer();
+                        if (!referencedCodec.isNull(candidate, referencedIndex)) {
+                            ByteBuffer value = referencedCodec.field(candidate, referencedIndex);
+                            if (missing.contains(value)) {
+                                byte[] copy = new byte[value.remaining()];
+                                value.duplicate().get(copy);
+                                hits.add(ByteBuffer.wrap(copy));
+                            }
+                        }
                     }
+                    return hits;
+                });
+                if (matched != null) {
+                    missing.removeAll(matched);
                 }
             }
-            if (!found) throw new RuntimeException("外键值不存在: " + new String(fieldValue));
+            if (!missing.isEmpty()) {
+                ByteBuffer value = missing.iterator().next();
+                throw new RuntimeException("外键值不存在: " + codec.get(rowOf(rows, codec, fieldIndex, value), fieldIndex));
+            }
+        }
+    }
+
+    // 找出外键列取值为 value 的那一行，用于报错时显示解码后的值
+    private static ByteBuffer rowOf(List<byte[]> rows, RowCodec codec, int fieldIndex, ByteBuffer value) {
+        for (byte[] data : rows) {
+            ByteBuffer row = ByteBuffer.wrap(data);
+            if (!codec.isNull(row, fieldIndex) && codec.field(row, fieldIndex).equals(value)) {
+                return row;
+            }
+        }
+        throw new IllegalStateException("外键值不在本批数据中");
+    }
+
+    /**
+     * 命令中的页号可以是表内页号（1, 2, ...），换算为表所在段的全局页号；已是全局页号时只校验所属的段
+     */
+    private int resolvePageId(String tableName, int pageId) throws IOException {
+        Table table = tableManager.getTable(tableName);
+        if (table == null) throw new IllegalArgumentException("表不存在：" + tableName);
+        int segmentId = PageId.segment(pageId);
+        if (segmentId == PageId.LEGACY_SEGMENT) {
+            return PageId.of(table.getSegmentId(), pageId);
+        }
+        if (segmentId != table.getSegmentId()) {
+            throw new IllegalArgumentException("页面 " + pageId + " 不属于表 " + tableName);
+        }
+        return pageId;
+    }
+
+    /**
+     * 在已加锁的页面中依次插入 rows 直到放不下，更新空闲空间映射，返回插入的行数
+     */
+    private int insertBatchIntoPage(long xid, String tableName, Page page, List<byte[]> rows) throws IOException {
+        List<Record> records;
+        try {
+            records = recordManager.insertBatch(page, rows, xid);
+        } catch (Exception e) {
+            log.error("事务 {} 批量插入记录失败", xid, e);
+            rollbackTransaction(xid);
+            throw e;
         }
+        pageManager.updateFreeSpace(tableName, page);
+        return records.size();
     }
-    private boolean startsWith(byte[] full, byte[] prefix) {
-        if (full.length < prefix.length) return false;
-        for (int i = 0; i < prefix.length; i++) {
-            if (full[i] != prefix[i]) return false;
+
+    /**
+     * 在已加锁的页面中插入记录并更新空闲空间映射，页面空间不足（映射已过期）时返回 false
+     */
+    private boolean insertIntoPage(long xid, String tableName, Page page, byte[] data) throws IOException {
+        Record record;
+        try {
+            record = recordManager.insert(page, data, xid);
+        } catch (Exception e) {
+            log.error("事务 {} 插入记录失败", xid, e);
+            rollbackTransaction(xid);
+            throw e;
         }
-        return true;
+        pageManager.updateFreeSpace(tableName, page);
+        return record != null;
     }
+
     @Override
     public void update(long xid, String tableName, int pageId, int slotId, byte[] newData) throws IOException {
         log.info("事务 {} 更新表 {} 中页 {} 的槽位 {}", xid, tableName, pageId, slotId);
+        pageId = resolvePageId(tableName, pageId);
+        RowCodec.of(tableManager.getTable(tableName)).check(ByteBuffer.wrap(newData));
         
         Page page = pageManager.readPage(pageId);
-        
-        // 尝试获取记录级排他锁
-        Lock recordLock = acquireRecordLock(xid, page, slotId, LockType.EXCLUSIVE_LOCK);
-        
-        if (recordLock == null) {
-            log.error("事务 {} 无法获取记录锁 ({},{}), 可能发生死锁", xid, pageId, slotId);
-            rollbackTransaction(xid);
-            throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
+        if (page == null) {
+            throw new IllegalArgumentException("页面不存在: " + pageId);
         }
-        
+
         try {
-            Record record = page.getRecords().get(slotId);
-            if (record == null) {
-                throw new IllegalArgumentException("记录不存在，页 " + pageId + " 槽位 " + slotId);
+            // 尝试获取记录级排他锁
+            Lock recordLock = acquireRecordLock(xid, page, slotId, LockType.EXCLUSIVE_LOCK);
+
+            if (recordLock == null) {
+                log.error("事务 {} 无法获取记录锁 ({},{}), 可能发生死锁", xid, pageId, slotId);
+                rollbackTransaction(xid);
+                throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
             }
-            recordManager.update(page, record, newData, xid);
-        } catch (Exception e) {
-            log.error("事务 {} 更新记录失败", xid, e);
-            rollbackTransaction(xid);
-            throw e;
+
+            try {
+                Record record = page.getRecord(slotId);
+                if (record == null) {
+                    throw new IllegalArgumentException("记录不存在，页 " + pageId + " 槽位 " + slotId);
+                }
+                // 新版本写在原槽位，页面连旧版本的空间也不够时无法更新
+                if (recordManager.update(page, record, newData, xid) == null) {
+                    throw new IllegalStateException("页面空间不足，无法更新记录，页 " + pageId + " 槽位 " + slotId);
+                }
+                pageManager.updateFreeSpace(tableName, page);
+            } catch (Exception e) {
+                log.error("事务 {} 更新记录失败", xid, e);
+                rollbackTransaction(xid);
+                throw e;
+            }
+        } finally {
+            pageManager.unpinPage(page);
         }
     }
 
     @Override
     public void delete(long xid, String tableName, int pageId, int slotId) throws IOException {
         log.info("事务 {} 删除表 {} 中页 {} 的槽位 {}", xid, tableName, pageId, slotId);
+        pageId = resolvePageId(tableName, pageId);
         
         Page page = pageManager.readPage(pageId);
-        
-        // 尝试获取记录级排他锁
-        Lock recordLock = acquireRecordLock(xid, page, slotId, LockType.EXCLUSIVE_LOCK);
-        
-        if (recordLock == null) {
-            log.error("事务 {} 无法获取记录锁 ({},{}), 可能发生死锁", xid, pageId, slotId);
-            rollbackTransaction(xid);
-            throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
+        if (page == null) {
+            throw new IllegalArgumentException("页面不存在: " + pageId);
         }
-        
+
         try {
-            Record record = page.getRecords().get(slotId);
-            if (record == null) {
-                throw new IllegalArgumentException("记录不存在，页 " + pageId + " 槽位 " + slotId);
+            // 尝试获取记录级排他锁
+            Lock recordLock = acquireRecordLock(xid, page, slotId, LockType.EXCLUSIVE_LOCK);
+
+            if (recordLock == null) {
+                log.error("事务 {} 无法获取记录锁 ({},{}), 可能发生死锁", xid, pageId, slotId);
+                rollbackTransaction(xid);
+                throw new RuntimeException("无法获取锁，事务 " + xid + " 已回滚");
             }
-            recordManager.delete(page, record, xid);
-        } catch (Exception e) {
-            log.error("事务 {} 删除记录失败", xid, e);
-            rollbackTransaction(xid);
-            throw e;
+
+            try {
+                Record record = page.getRecord(slotId);
+                if (record == null) {
+                    throw new IllegalArgumentException("记录不存在，页 " + pageId + " 槽位 " + slotId);
+                }
+                recordManager.delete(page, record, xid);
+                pageManager.updateFreeSpace(tableName, page);
+            } catch (Exception e) {
+                log.error("事务 {} 删除记录失败", xid, e);
+                rollbackTransaction(xid);
+                throw e;
+            }
+        } finally {
+            pageManager.unpinPage(page);
         }
     }
 
     @Override
     public byte[] select(String tableName, int pageId, int slotId) throws IOException {
         log.info("查询表 {} 中页 {} 的槽位 {}", tableName, pageId, slotId);
+        pageId = resolvePageId(tableName, pageId);
         
-        // 开始一个读事务
+        // 开始一个读事务，按事务开始时的快照读取，不加锁，也不会被写事务阻塞
         long readXid = beginTransaction();
+        Snapshot snapshot = transactionManager.getSnapshot(readXid);
         
         Page page = pageManager.readPage(pageId);
-        
-        // 尝试获取记录级共享锁
-        Lock recordLock = acquireRecordLock(readXid, page, slotId, LockType.SHARED_LOCK);
-        
-        if (recordLock == null) {
-            log.error("无法获取记录的共享锁 ({},{})", pageId, slotId);
+        if (page == null) {
             rollbackTransaction(readXid);
-            throw new RuntimeException("无法获取共享锁，读操作失败");
+            throw new IllegalArgumentException("页面不存在: " + pageId);
         }
-        
+
         try {
-            Record record = page.getRecords().get(slotId);
+            Record record = page.getRecord(slotId);
             if (record == null) {
                 throw new IllegalArgumentException("记录不存在，页 " + pageId + " 槽位 " + slotId);
             }
-            byte[] result = recordManager.select(page, record);
-            
+            byte[] result = recordManager.select(page, record, snapshot);
+
             // 查询完成后提交读事务
             commitTransaction(readXid);
-            
+
             return result;
         } catch (Exception e) {
             log.error("查询记录失败", e);
             rollbackTransaction(readXid);
             throw e;
+        } finally {
+            pageManager.unpinPage(page);
         }
     }
 
@@ -246,28 +453,27 @@ public class QueryEngineImpl implements QueryEngine {
     public List<byte[]> selectAll(String tableName) throws IOException {
         log.info("查询表 {} 的所有记录", tableName);
 
-        // 开始一个读事务
+        // 开始一个读事务，按快照读取，不加页锁，可以与写事务并行
         long readXid = beginTransaction();
+        Snapshot snapshot = transactionManager.getSnapshot(readXid);
         List<byte[]> result = new ArrayList<>();
-        List<Lock> acquiredLocks = new ArrayList<>();
 
         try {
-            for (int i = 1; i <= pageManager.getTotalPages(); i++) {
-                Page page = pageManager.readPage(i);
-
-                // 尝试获取页级共享锁
-                Lock pageLock = acquirePageLock(readXid, page, LockType.SHARED_LOCK);
-
-                if (pageLock == null) {
-                    log.error("无法获取页 {} 的共享锁", i);
-                    // 继续处理其他页，但记录错误
-                    continue;
-                }
-
-                acquiredLocks.add(pageLock);
-
-                for (Record record : recordManager.getAllRecords(page)) {
-                    result.add(record.getData());
+            Table table = tableManager.getTable(tableName);
+            if (table == null) throw new IllegalArgumentException("表不存在：" + tableName);
+
+            // 只扫描该表所在的段，并提示页面管理器按顺序预读
+            int segmentId = table.getSegmentId();
+            int pageCount = pageManager.getPageCount(segmentId);
+            pageManager.readAhead(PageId.of(segmentId, 1), PageId.of(segmentId, pageCount));
+            // 大表扫描只在环形缓冲内循环使用页帧
+            BufferAccessStrategy strategy = pageManager.scanStrategy(pageCount);
+            for (int i = 1; i <= pageCount; i++) {
+                // 已驻留的页面乐观读取，不固定页帧；reader 只复制数据，旧版本在读完页面之后再沿版本链查找
+                VisibleRows rows = pageManager.readPage(PageId.of(segmentId, i), strategy,
+                        p -> recordManager.copyVisibleRows(p, snapshot));
+                if (rows != null) {
+                    result.addAll(recordManager.resolveVersions(rows, snapshot));
                 }
             }
 
@@ -300,10 +506,10 @@ public class QueryEngineImpl implements QueryEngine {
             
             if (lock != null && lockType == LockType.EXCLUSIVE_LOCK) {
                 // 如果是写锁，记录修改的页面和记录
-                Record record = page.getRecords().get(slotId);
+                Record record = page.getRecord(slotId);
                 if (record != null) {
                     // 将修改过的页面添加到事务的修改页面列表中
-                    transactionManager.getModifiedPages(xid).add(page);
+                    transactionManager.addModifiedPage(xid, page);
                 }
             }
         } catch (Exception e) {
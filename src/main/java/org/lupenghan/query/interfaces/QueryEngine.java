@@ -15,8 +15,12 @@ public interface QueryEngine {
 
     void rollbackTransaction(long xid) throws IOException;
 
+    // data 和 newData 为按表结构用 RowCodec 编码的行，与表结构不符时抛出 IllegalArgumentException
     void insert(long xid, String tableName, byte[] data) throws IOException;
 
+    // 批量插入，按顺序填满页面，每个页面只加一次锁、写一条日志
+    void insertBatch(long xid, String tableName, List<byte[]> rows) throws IOException;
+
     void update(long xid, String tableName, int pageId, int slotId, byte[] newData) throws IOException;
 
     void delete(long xid, String tableName, int pageId, int slotId) throws IOException;
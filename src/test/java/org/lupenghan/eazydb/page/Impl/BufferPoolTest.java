@@ -0,0 +1,98 @@
+package org.lupenghan.eazydb.page.Impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.lupenghan.eazydb.page.models.Page;
+import org.lupenghan.eazydb.page.models.PageIOMode;
+import org.lupenghan.eazydb.page.models.PageId;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class BufferPoolTest {
+    private static final int CACHE_SIZE = 16;
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("bufferpool-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // 新建后没有修改就被淘汰的页面，之后反复读取都应得到同一页，而不是空白页或一直等待
+    @Test(timeout = 10_000)
+    public void cleanNewPageSurvivesEviction() throws IOException {
+        PageManagerImpl pageManager = new PageManagerImpl(dir.resolve("page.page").toString(), CACHE_SIZE, PageIOMode.BUFFERED);
+        try {
+            int segmentId = pageManager.createSegment();
+            Page first = pageManager.createPage(segmentId);
+            int pageId = first.getHeader().getPageId();
+            pageManager.unpinPage(first);
+            for (int i = 0; i < Segment.EXTENT_PAGES; i++) {
+                pageManager.unpinPage(pageManager.createPage(segmentId));
+            }
+
+            for (int i = 0; i < 2; i++) {
+                Page page = pageManager.readPage(pageId);
+                assertNotNull(page);
+                try {
+                    assertEquals(pageId, page.getHeader().getPageId());
+                } finally {
+                    pageManager.unpinPage(page);
+                }
+            }
+        } finally {
+            pageManager.close();
+        }
+    }
+
+    // 已分配但从未写出的预分配页面视为不存在
+    @Test
+    public void unwrittenPreallocatedPageIsAbsent() throws IOException {
+        try (Segment segment = Segment.create(1, new FilePageStore(dir.resolve("1.seg"), Page.DEFAULT_PAGE_SIZE),
+                Page.DEFAULT_PAGE_SIZE, false)) {
+            int pageNo = segment.allocatePage();
+            assertFalse(segment.read(pageNo, ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE)));
+            assertEquals(0, segment.read(pageNo, new ByteBuffer[]{ByteBuffer.allocate(Page.DEFAULT_PAGE_SIZE)}));
+        }
+    }
+
+    // 读到页头页号不符的页面时报错，不放入缓冲池，重复读取也不会卡住
+    @Test(timeout = 10_000)
+    public void mismatchedPageIdFailsInsteadOfSpinning() throws IOException {
+        BufferPool pool = new BufferPool(CACHE_SIZE, Page.DEFAULT_PAGE_SIZE, page -> { });
+        int pageId = PageId.of(1, 1);
+        BufferPool.PageLoader loader = (id, frame) -> {
+            new Page(PageId.of(1, 2), frame);
+            return true;
+        };
+        for (int i = 0; i < 2; i++) {
+            try {
+                pool.fetch(pageId, loader);
+                fail("页头页号不符时应当报错");
+            } catch (IllegalStateException expected) {
+                // 期望的异常
+            }
+        }
+        assertNull(pool.fetchIfResident(pageId));
+        assertEquals(0, pool.size());
+    }
+}